@@ -0,0 +1,91 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrows and returns the same {@value #ITEMS} items per invocation, either one call per item
+ * ({@code mode=single}) or as one borrow batch and one return batch ({@code mode=batch}), so the
+ * score compares the per-item cost of the two paths. Each member borrows up to the loan limit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(BorrowBatchBenchmark.ITEMS)
+public class BorrowBatchBenchmark {
+
+    static final int ITEMS = 200;
+    private static final int LOANS_PER_MEMBER = 10;
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        EmbeddedLibrary library;
+        BorrowService borrowService;
+        List<BorrowRequestDTO> requests = new ArrayList<>();
+
+        @Param({"single", "batch"})
+        String mode;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            library = EmbeddedLibrary.start("--member.borrow.limit=" + LOANS_PER_MEMBER);
+            borrowService = library.bean(BorrowService.class);
+            MemberRepository memberRepository = library.bean(MemberRepository.class);
+            BookRepository bookRepository = library.bean(BookRepository.class);
+
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < ITEMS / LOANS_PER_MEMBER; i++) {
+                Member member = new Member();
+                member.setName("Batch Member " + i);
+                member.setMembershipDate(LocalDate.now());
+                members.add(member);
+            }
+            memberRepository.saveAll(members);
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < ITEMS; i++) {
+                Book book = new Book();
+                book.setTitle("Batch Title " + i);
+                book.setAuthor("Batch Author");
+                book.setAmount(1);
+                books.add(book);
+            }
+            bookRepository.saveAll(books);
+            for (int i = 0; i < ITEMS; i++) {
+                requests.add(new BorrowRequestDTO(members.get(i % members.size()).getId(), books.get(i).getId()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            library.close();
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Library library) {
+        if (library.mode.equals("batch")) {
+            library.borrowService.borrowBooks(library.requests);
+            library.borrowService.returnBooks(library.requests);
+            return;
+        }
+        for (BorrowRequestDTO request : library.requests) {
+            library.borrowService.borrowBook(request.getMemberId(), request.getBookId());
+        }
+        for (BorrowRequestDTO request : library.requests) {
+            library.borrowService.returnBook(request.getMemberId(), request.getBookId());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.library.benchmark;
+
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrow-then-return cycles from many threads, each as its own member, all on the same book,
+ * so every operation contends for one book row. With {@code mode=engine} the copies come from the
+ * in-memory inventory engine instead; with {@code mode=journal} borrows and returns are acknowledged
+ * from the write-behind journal and reach the database in batches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class BorrowContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        EmbeddedLibrary library;
+        BorrowService borrowService;
+        MemberRepository memberRepository;
+        Long hotBookId;
+
+        @Param({"direct", "engine", "journal"})
+        String mode;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            library = switch (mode) {
+                case "engine" -> EmbeddedLibrary.start("--inventory.engine.enabled=true");
+                case "journal" -> EmbeddedLibrary.start("--borrow.journal.enabled=true",
+                        "--borrow.journal.path=" + Files.createTempDirectory("borrow-journal").resolve("borrow.journal"));
+                default -> EmbeddedLibrary.start();
+            };
+            borrowService = library.bean(BorrowService.class);
+            memberRepository = library.bean(MemberRepository.class);
+
+            Book book = new Book();
+            book.setTitle("Contended Title");
+            book.setAuthor("Hot Author");
+            book.setAmount(1_000_000);
+            hotBookId = library.bean(BookRepository.class).save(book).getId();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            library.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        Long memberId;
+
+        @Setup(Level.Trial)
+        public void setUp(Library library) {
+            Member member = new Member();
+            member.setName("Benchmark Member " + Thread.currentThread().getId());
+            member.setMembershipDate(LocalDate.now());
+            memberId = library.memberRepository.save(member).getId();
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Library library, Borrower borrower) {
+        library.borrowService.borrowBook(borrower.memberId, library.hotBookId);
+        library.borrowService.returnBook(borrower.memberId, library.hotBookId);
+    }
+}
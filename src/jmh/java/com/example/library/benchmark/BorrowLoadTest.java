@@ -0,0 +1,167 @@
+package com.example.library.benchmark;
+
+import com.example.library.LibraryApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@code BorrowController}: many concurrent clients, each a member of its own, borrow
+ * and return copies of a shared book over HTTP. The application runs once with platform request
+ * threads and once in the {@code virtual-threads} profile (Java 21+), and reports throughput and
+ * p99 latency for each.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmarks test-compile exec:exec@load-test}; tune with
+ * {@code -Dload.clients} (default 400) and {@code -Dload.seconds} (default 20).
+ * Results are also written to {@code target/load-test-result.json}.
+ */
+public final class BorrowLoadTest {
+
+    private static final int BOOKS = 100;
+
+    private BorrowLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Devtools is on the test classpath; its restarter would run the application twice.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int clients = Integer.getInteger("load.clients", 400);
+        Duration duration = Duration.ofSeconds(Long.getLong("load.seconds", 20));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            results.add(run("platform", postgres, clients, duration));
+            if (Runtime.version().feature() >= 21) {
+                results.add(run("virtual-threads", postgres, clients, duration));
+            } else {
+                System.out.println("Skipping virtual-threads mode: it needs Java 21, running on " + Runtime.version());
+            }
+        }
+
+        File output = new File("target/load-test-result.json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, results);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+    private static Map<String, Object> run(String mode, EmbeddedPostgres postgres, int clients, Duration duration)
+            throws Exception {
+        String database = mode.replace('-', '_');
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + database);
+        }
+
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", database) + "&reWriteBatchedInserts=true",
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/" + database,
+                "--r2dbc.username=postgres",
+                "--r2dbc.password=postgres",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        if (!mode.equals("platform")) {
+            arguments.add("--spring.profiles.active=" + mode);
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class)
+                .run(arguments.toArray(String[]::new))) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            jdbc.update("INSERT INTO book (title, author, amount) "
+                    + "SELECT 'Load Title ' || g, 'Load Author', 1000000 FROM generate_series(1, ?) g", BOOKS);
+            jdbc.update("INSERT INTO member (name, membership_date) "
+                    + "SELECT 'Load Member ' || g, CURRENT_DATE FROM generate_series(1, ?) g", clients);
+            List<Long> bookIds = jdbc.queryForList("SELECT id FROM book ORDER BY id", Long.class);
+            List<Long> memberIds = jdbc.queryForList("SELECT id FROM member ORDER BY id", Long.class);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            Map<String, Object> result = drive(mode, baseUrl, memberIds, bookIds, clients, duration);
+            System.out.println(result);
+            return result;
+        }
+    }
+
+    private static Map<String, Object> drive(String mode, String baseUrl, List<Long> memberIds, List<Long> bookIds,
+                                             int clients, Duration duration) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        long[][] latencies = new long[clients][];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                Long memberId = memberIds.get(client);
+                Long bookId = bookIds.get(client % bookIds.size());
+                try {
+                    while (System.nanoTime() < deadline) {
+                        for (String path : List.of("/api/borrow/", "/api/borrow/return/")) {
+                            long start = System.nanoTime();
+                            HttpResponse<Void> response = http.send(
+                                    HttpRequest.newBuilder(URI.create(baseUrl + path + memberId + "/" + bookId))
+                                            .POST(HttpRequest.BodyPublishers.noBody())
+                                            .build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                            if (count == samples.length) {
+                                samples = Arrays.copyOf(samples, count * 2);
+                            }
+                            samples[count++] = System.nanoTime() - start;
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    latencies[client] = Arrays.copyOf(samples, count);
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        done.await();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode);
+        result.put("clients", clients);
+        result.put("requests", all.length);
+        result.put("errors", errors.get());
+        result.put("throughputPerSecond", Math.round(all.length / (double) duration.toSeconds()));
+        result.put("p50Millis", percentile(all, 0.50));
+        result.put("p99Millis", percentile(all, 0.99));
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
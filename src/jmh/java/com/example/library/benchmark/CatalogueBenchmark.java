@@ -0,0 +1,97 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths over a catalogue of {@code rows} books, a tenth of which are on loan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogueBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private EmbeddedLibrary library;
+    private BookService bookService;
+    private BorrowService borrowService;
+    private BorrowRepository borrowRepository;
+    private long middleId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        library = EmbeddedLibrary.start();
+        library.jdbc().update("INSERT INTO member (name, membership_date) "
+                + "SELECT 'Member ' || g, CURRENT_DATE FROM generate_series(1, ?) g", Math.max(1, rows / 100));
+        library.jdbc().update("INSERT INTO book (title, author, amount) "
+                + "SELECT 'Title ' || g, 'Author ' || (g % 1000), 3 FROM generate_series(1, ?) g", rows);
+        library.jdbc().update("INSERT INTO borrow (member_id, book_id, borrow_date) "
+                + "SELECT (SELECT MIN(id) FROM member), id, CURRENT_DATE FROM book WHERE id % 10 = 0");
+        // Also moves the bulk-loaded words out of the GIN pending lists, as autovacuum would soon after.
+        library.jdbc().execute("VACUUM ANALYZE");
+        middleId = library.jdbc().queryForObject(
+                "SELECT id FROM book ORDER BY id OFFSET ? LIMIT 1", Long.class, rows / 2);
+
+        bookService = library.bean(BookService.class);
+        borrowService = library.bean(BorrowService.class);
+        borrowRepository = library.bean(BorrowRepository.class);
+        // The data was loaded behind the tracker's back after startup.
+        library.bean(BorrowStatsTracker.class).seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        library.close();
+    }
+
+    @Benchmark
+    public List<BookDTO> listBooksFirstPage() {
+        return bookService.listBooks(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<BookDTO> listBooksMiddlePage() {
+        return bookService.listBooks(middleId, PAGE_SIZE);
+    }
+
+    /** Sampled, so the JSON report carries the latency percentiles (p99) as well as the mean. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<BookDTO> searchBooks() {
+        return bookService.searchBooks("title 4242", 0, 20);
+    }
+
+    /** No token matches, so this takes the fuzzy fallback. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<BookDTO> searchBooksWithTypo() {
+        return bookService.searchBooks("atuhor 42", 0, 20);
+    }
+
+    @Benchmark
+    public List<BorrowedBookStatDTO> borrowedBookStats() {
+        return borrowService.getBorrowedBookStats();
+    }
+
+    /** The database aggregate the statistics endpoint used to run on every call, for comparison. */
+    @Benchmark
+    public List<Object[]> borrowedBookStatsAggregate() {
+        return borrowRepository.findBorrowedBookTitleWithCount();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.library.benchmark;
+
+import com.example.library.LibraryApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+/**
+ * The application context without the web layer, backed by a fresh embedded PostgreSQL.
+ * Each benchmark trial starts its own instance and closes it in its tear-down.
+ */
+final class EmbeddedLibrary implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedLibrary(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * @param properties extra {@code --name=value} arguments, e.g. to switch on optional features
+     */
+    static EmbeddedLibrary start(String... properties) throws IOException {
+        // Devtools is on the test classpath; its restarter would run the application twice.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        EmbeddedPostgres postgres = EmbeddedPostgres.start();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                // Passed as arguments so they take precedence over application.properties.
+                .run(Stream.concat(Stream.of(
+                                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                                "--spring.datasource.username=postgres",
+                                "--spring.datasource.password=postgres",
+                                "--r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                                "--r2dbc.username=postgres",
+                                "--r2dbc.password=postgres",
+                                "--spring.jpa.show-sql=false",
+                                "--spring.main.banner-mode=off",
+                                "--logging.level.root=WARN"), Stream.of(properties))
+                        .toArray(String[]::new));
+        return new EmbeddedLibrary(postgres, context);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /** Registers a listener for the events the application publishes, such as hold fulfilments. */
+    void addListener(ApplicationListener<ApplicationEvent> listener) {
+        context.addApplicationListener(listener);
+    }
+
+    JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
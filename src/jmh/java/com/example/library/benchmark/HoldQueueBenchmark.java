@@ -0,0 +1,139 @@
+package com.example.library.benchmark;
+
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.holds.HoldFulfilled;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eight patrons, each as its own member, competing for a title with two copies. With
+ * {@code mode=retry} a patron who finds no copy asks again at once, as clients do without holds;
+ * with {@code mode=hold} they place a hold and wait until a returned copy is lent to them. The
+ * {@code rejections} counter, the borrow attempts turned away after a write attempt on the book
+ * row, is the retry traffic; compare it with {@code loans}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class HoldQueueBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        EmbeddedLibrary library;
+        BorrowService borrowService;
+        MemberRepository memberRepository;
+        Long scarceBookId;
+        /** Released when a hold of the member is fulfilled, per member. */
+        final Map<Long, Semaphore> lent = new ConcurrentHashMap<>();
+
+        @Param({"retry", "hold"})
+        String mode;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            library = EmbeddedLibrary.start();
+            borrowService = library.bean(BorrowService.class);
+            memberRepository = library.bean(MemberRepository.class);
+            library.addListener(event -> {
+                if (event instanceof PayloadApplicationEvent<?> payload
+                        && payload.getPayload() instanceof HoldFulfilled fulfilled) {
+                    lent.get(fulfilled.memberId()).release();
+                }
+            });
+
+            Book book = new Book();
+            book.setTitle("Scarce Title");
+            book.setAuthor("Sought Author");
+            book.setAmount(2);
+            scarceBookId = library.bean(BookRepository.class).save(book).getId();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            library.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Patron {
+        Long memberId;
+        Semaphore lent;
+
+        @Setup(Level.Trial)
+        public void setUp(Library library) {
+            Member member = new Member();
+            member.setName("Benchmark Patron " + Thread.currentThread().getId());
+            member.setMembershipDate(LocalDate.now());
+            memberId = library.memberRepository.save(member).getId();
+            lent = library.lent.computeIfAbsent(memberId, id -> new Semaphore(0));
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Traffic {
+        public long loans;
+        public long rejections;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            loans = 0;
+            rejections = 0;
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Library library, Patron patron, Traffic traffic) throws InterruptedException {
+        if ("hold".equals(library.mode)) {
+            borrowOrHold(library, patron, traffic);
+        } else {
+            borrowRetrying(library, patron, traffic);
+        }
+        traffic.loans++;
+        library.borrowService.returnBook(patron.memberId, library.scarceBookId);
+    }
+
+    private static void borrowRetrying(Library library, Patron patron, Traffic traffic) {
+        while (true) {
+            try {
+                library.borrowService.borrowBook(patron.memberId, library.scarceBookId);
+                return;
+            } catch (IllegalStateException unavailable) {
+                traffic.rejections++;
+            }
+        }
+    }
+
+    private static void borrowOrHold(Library library, Patron patron, Traffic traffic) throws InterruptedException {
+        while (true) {
+            try {
+                library.borrowService.borrowBook(patron.memberId, library.scarceBookId);
+                return;
+            } catch (IllegalStateException unavailable) {
+                traffic.rejections++;
+            }
+            try {
+                library.borrowService.placeHold(patron.memberId, library.scarceBookId);
+            } catch (IllegalStateException available) {
+                // A copy came back between the two calls; borrow it.
+                continue;
+            }
+            patron.lent.acquire();
+            return;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.MemberDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-DTO mapping on its own; lives next to the services to reach their package-private mappers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private BookServiceImpl bookService;
+    private MemberServiceImpl memberService;
+    private Book book;
+    private Member member;
+
+    @Setup
+    public void setUp() {
+        bookService = new BookServiceImpl(null, null, null, null, new InventoryEngine(null, null),
+                new BorrowJournal(null, null, null, null), null, null, null);
+        memberService = new MemberServiceImpl(null, null, null, new BorrowJournal(null, null, null, null), null);
+
+        book = new Book();
+        book.setId(42L);
+        book.setTitle("Benchmark Title");
+        book.setAuthor("Benchmark Author");
+        book.setAmount(3);
+
+        member = new Member();
+        member.setId(7L);
+        member.setName("Benchmark Member");
+        member.setMembershipDate(LocalDate.now());
+    }
+
+    @Benchmark
+    public BookDTO bookToDTO() {
+        return bookService.mapToDTO(book);
+    }
+
+    @Benchmark
+    public MemberDTO memberToDTO() {
+        return memberService.toDTO(member);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.library.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves loans returned more than {@code borrow.archive.after.days} ago from {@code borrow_current}
+ * into the yearly {@code borrow_archive_<year>} partitions, creating a year's partition before its
+ * first loan arrives. Setting {@code archived} is what moves a row; each chunk is its own statement
+ * and transaction, and the chunks walk {@code borrow_current} in id order, so a first run over
+ * years of history reads the table once.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BorrowArchiver {
+
+    private static final String YEARS_SQL =
+            "SELECT DISTINCT EXTRACT(YEAR FROM borrow_date)::int FROM borrow_current WHERE return_date < ?";
+
+    private static final String PARTITION_SQL =
+            "CREATE TABLE IF NOT EXISTS borrow_archive_%1$d PARTITION OF borrow_archive "
+                    + "FOR VALUES FROM ('%1$d-01-01') TO ('%2$d-01-01')";
+
+    private static final String CHUNK_SQL =
+            "SELECT id FROM borrow_current WHERE id > ? AND return_date < ? ORDER BY id LIMIT ?";
+
+    private static final String ARCHIVE_SQL =
+            "UPDATE borrow SET archived = true WHERE archived = false AND id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // A lock rather than synchronized: the run blocks on JDBC while holding it.
+    private final ReentrantLock archiveLock = new ReentrantLock();
+
+    @Value("${borrow.archive.after.days}")
+    private int afterDays;
+
+    @Value("${borrow.archive.chunk.size}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${borrow.archive.interval}")
+    public void archive() {
+        archiveLock.lock();
+        try {
+            LocalDate cutoff = LocalDate.now().minusDays(afterDays);
+            for (int year : jdbcTemplate.queryForList(YEARS_SQL, Integer.class, cutoff)) {
+                jdbcTemplate.execute(String.format(PARTITION_SQL, year, year + 1));
+            }
+            long cursor = 0;
+            int archived = 0;
+            List<Long> chunk;
+            do {
+                chunk = jdbcTemplate.queryForList(CHUNK_SQL, Long.class, cursor, cutoff, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                Long[] ids = chunk.toArray(Long[]::new);
+                archived += jdbcTemplate.update(ARCHIVE_SQL,
+                        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+                cursor = chunk.get(chunk.size() - 1);
+            } while (chunk.size() == chunkSize);
+            if (archived > 0) {
+                log.info("Archived {} loans returned before {}", archived, cutoff);
+            }
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.library.availability;
+
+import com.example.library.dto.AvailabilityDTO;
+import com.example.library.exception.NotFoundException;
+import com.example.library.service.BookService;
+import com.example.library.support.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes the copies available of a book to its server-sent event subscribers. A subscription is
+ * an async request, so an idle one holds a connection but no thread. Stock changes committed for
+ * books with subscribers are collected and sent every {@code availability.stream.interval}: a
+ * burst of loans and returns becomes at most one event per book, read from the database once per
+ * book whatever the number of subscribers, and none at all if the count ends where it started.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvailabilityBroadcaster {
+
+    static final String EVENT_NAME = "availability";
+
+    private final BookService bookService;
+
+    private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    /** The count last sent to every subscriber of a book; forgotten when the book gets a new one. */
+    private final Map<Long, Integer> lastSent = new ConcurrentHashMap<>();
+
+    @Value("${availability.stream.timeout}")
+    private Duration timeout;
+
+    /**
+     * Subscribes to the availability of the book, starting with its current count.
+     *
+     * @throws NotFoundException if there is no such book
+     */
+    public SseEmitter subscribe(Long bookId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        // Subscribed before the first read, so a change committed in between is still sent.
+        subscribers.compute(bookId, (id, emitters) -> {
+            Set<SseEmitter> subscribed = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            subscribed.add(emitter);
+            return subscribed;
+        });
+        // The first count may differ from the last one sent, so the next change must go out even
+        // if it restores that one.
+        lastSent.remove(bookId);
+        emitter.onCompletion(() -> unsubscribe(bookId, emitter));
+        emitter.onTimeout(() -> unsubscribe(bookId, emitter));
+        emitter.onError(failure -> unsubscribe(bookId, emitter));
+        Integer available = bookService.getAvailableCopies(List.of(bookId)).get(bookId);
+        if (available == null) {
+            unsubscribe(bookId, emitter);
+            throw new NotFoundException("Book with ID " + bookId + " not found");
+        }
+        send(bookId, emitter, event(bookId, available));
+        return emitter;
+    }
+
+    /** Collects the book once the change commits, if anyone is watching it. */
+    @EventListener
+    void stockChanged(BookStockChanged event) {
+        if (subscribers.containsKey(event.bookId())) {
+            AfterCommit.run(() -> changed.add(event.bookId()));
+        }
+    }
+
+    /**
+     * Sends the current count of every book changed since the last run to its subscribers, after
+     * one query for all of them. Subscribers of a book that no longer exists are completed.
+     */
+    @Scheduled(fixedDelayString = "${availability.stream.interval}")
+    public void publish() {
+        lastSent.keySet().retainAll(subscribers.keySet());
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Long> bookIds = new ArrayList<>(changed);
+        changed.removeAll(bookIds);
+        bookIds.removeIf(id -> !subscribers.containsKey(id));
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> available = bookService.getAvailableCopies(bookIds);
+        for (Long bookId : bookIds) {
+            Integer count = available.get(bookId);
+            if (count == null) {
+                subscribers.getOrDefault(bookId, Set.of()).forEach(SseEmitter::complete);
+                continue;
+            }
+            if (count.equals(lastSent.put(bookId, count))) {
+                continue;
+            }
+            Set<DataWithMediaType> event = event(bookId, count);
+            for (SseEmitter emitter : subscribers.getOrDefault(bookId, Set.of())) {
+                send(bookId, emitter, event);
+            }
+        }
+    }
+
+    /**
+     * Writes a comment to every subscriber, so connections closed without notice (a kiosk
+     * switched off) are found and dropped, and proxies do not time out quiet streams.
+     */
+    @Scheduled(fixedDelayString = "${availability.stream.heartbeat}")
+    public void heartbeat() {
+        Set<DataWithMediaType> ping = SseEmitter.event().comment("").build();
+        subscribers.forEach((bookId, emitters) -> emitters.forEach(emitter -> send(bookId, emitter, ping)));
+    }
+
+    /** Open subscriptions, over all books. */
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /** Built once per change and sent as is to every subscriber; a builder is not reusable. */
+    private static Set<DataWithMediaType> event(Long bookId, int available) {
+        return SseEmitter.event().name(EVENT_NAME).data(new AvailabilityDTO(bookId, available)).build();
+    }
+
+    private void send(Long bookId, SseEmitter emitter, Set<DataWithMediaType> event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Gone or already completed; the container reports the failure to the emitter as well.
+            log.debug("Dropping availability subscriber of book {}: {}", bookId, e.getMessage());
+            unsubscribe(bookId, emitter);
+        }
+    }
+
+    private void unsubscribe(Long bookId, SseEmitter emitter) {
+        subscribers.computeIfPresent(bookId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.library.availability;
+
+/**
+ * Published by the book and borrow services, inside their transaction, when a write may change
+ * the copies of a book available to borrow: a loan, a return, or a new amount. Listeners that act
+ * on it should wait for the commit.
+ */
+public record BookStockChanged(Long bookId) {
+}
@@ -0,0 +1,35 @@
+package com.example.library.changes;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.MemberDTO;
+
+/**
+ * One change for the outbox. Created and updated books and members carry their new state as the
+ * payload; deletions and loans carry only the ids involved.
+ */
+public record Change(ChangeType type, Long bookId, Long memberId, Object payload) {
+
+    public static Change book(ChangeType type, BookDTO book) {
+        return new Change(type, book.getId(), null, book);
+    }
+
+    public static Change bookDeleted(Long bookId) {
+        return new Change(ChangeType.BOOK_DELETED, bookId, null, null);
+    }
+
+    public static Change member(ChangeType type, MemberDTO member) {
+        return new Change(type, null, member.getId(), member);
+    }
+
+    public static Change memberDeleted(Long memberId) {
+        return new Change(ChangeType.MEMBER_DELETED, null, memberId, null);
+    }
+
+    public static Change borrowed(Long memberId, Long bookId) {
+        return new Change(ChangeType.BOOK_BORROWED, bookId, memberId, null);
+    }
+
+    public static Change returned(Long memberId, Long bookId) {
+        return new Change(ChangeType.BOOK_RETURNED, bookId, memberId, null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.library.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Writes changes to {@code change_outbox} in the transaction that makes them, so a change is in
+ * the feed if and only if it committed. Callers record a change after the statement that locks
+ * the changed row; two changes of the same book or member are then written in the order they
+ * commit, which is the order {@link ChangeSequencer} numbers them in.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChangeOutbox {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO change_outbox (type, book_id, member_id, payload) VALUES (?, ?, ?, ?::jsonb)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void record(Change change) {
+        recordAll(List.of(change));
+    }
+
+    /** Writes the changes in their list order, as one JDBC batch. */
+    public void recordAll(List<Change> changes) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Changes must be recorded in the transaction that makes them");
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, changes, changes.size(), (ps, change) -> {
+            ps.setString(1, change.type().name());
+            ps.setObject(2, change.bookId(), Types.BIGINT);
+            ps.setObject(3, change.memberId(), Types.BIGINT);
+            ps.setString(4, change.payload() != null ? toJson(change.payload()) : null);
+        });
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.library.changes;
+
+import com.example.library.metrics.LibraryMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gives committed changes in {@code change_outbox} their feed offsets, and prunes the changes
+ * older than {@code changes.retention}.
+ * <p>
+ * Outbox ids are taken before commit, so a change can commit after one with a higher id has been
+ * read; numbering only committed changes, one transaction at a time under the {@code change_feed}
+ * row lock, is what makes the offsets safe to resume from.
+ */
+@Slf4j
+@Component
+public class ChangeSequencer {
+
+    /**
+     * Taken in its own statement: under READ COMMITTED the numbering statement that follows then
+     * gets a snapshot from after the lock was granted, so it cannot see, and number again, rows
+     * that another instance numbered while this one waited.
+     */
+    private static final String LOCK_SQL = "SELECT last_seq FROM change_feed WHERE id = 1 FOR UPDATE";
+
+    private static final String SEQUENCE_SQL =
+            "WITH pending AS (SELECT id, row_number() OVER (ORDER BY id) AS n FROM change_outbox "
+                    + "WHERE seq IS NULL ORDER BY id LIMIT ?) "
+                    + "UPDATE change_outbox o SET seq = ? + pending.n, sequenced_at = now() "
+                    + "FROM pending WHERE o.id = pending.id";
+
+    private static final String ADVANCE_SQL =
+            "UPDATE change_feed SET last_seq = last_seq + ? WHERE id = 1 RETURNING last_seq";
+
+    private static final String HEAD_SQL = "SELECT last_seq FROM change_feed WHERE id = 1";
+
+    private static final String PRUNE_SQL =
+            "DELETE FROM change_outbox WHERE seq IN (SELECT seq FROM change_outbox WHERE seq IS NOT NULL "
+                    + "ORDER BY seq LIMIT ?) AND sequenced_at < ? RETURNING seq";
+
+    private static final String PRUNED_SQL =
+            "UPDATE change_feed SET pruned_seq = GREATEST(pruned_seq, ?) WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibraryMetrics libraryMetrics;
+
+    // Locks rather than synchronized: both runs block on JDBC while holding them.
+    private final ReentrantLock sequenceLock = new ReentrantLock();
+    private final ReentrantLock pruneLock = new ReentrantLock();
+
+    /** The last offset announced by this instance; guarded by {@link #sequenceLock}. */
+    private long publishedSeq;
+
+    @Value("${changes.sequence.chunk.size}")
+    private int sequenceChunkSize;
+
+    @Value("${changes.retention}")
+    private Duration retention;
+
+    @Value("${changes.prune.chunk.size}")
+    private int pruneChunkSize;
+
+    public ChangeSequencer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher eventPublisher, LibraryMetrics libraryMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.libraryMetrics = libraryMetrics;
+    }
+
+    @PostConstruct
+    void start() {
+        publishedSeq = jdbcTemplate.queryForObject(HEAD_SQL, Long.class);
+        libraryMetrics.changesSequenced(publishedSeq);
+    }
+
+    /**
+     * Numbers the committed changes that have no offset yet, in id order, one transaction per
+     * chunk, then publishes {@link ChangesSequenced} if the feed has grown since the last run,
+     * whether this instance or another one numbered the new changes.
+     */
+    @Scheduled(fixedDelayString = "${changes.sequence.interval}")
+    public void sequence() {
+        sequenceLock.lock();
+        try {
+            long[] chunk;
+            do {
+                // Rows numbered, and the last offset handed out.
+                chunk = transactionTemplate.execute(status -> {
+                    long last = jdbcTemplate.queryForObject(LOCK_SQL, Long.class);
+                    int rows = jdbcTemplate.update(SEQUENCE_SQL, sequenceChunkSize, last);
+                    return new long[]{rows, rows > 0
+                            ? jdbcTemplate.queryForObject(ADVANCE_SQL, Long.class, rows)
+                            : last};
+                });
+            } while (chunk[0] == sequenceChunkSize);
+            if (chunk[1] > publishedSeq) {
+                publishedSeq = chunk[1];
+                libraryMetrics.changesSequenced(publishedSeq);
+                eventPublisher.publishEvent(new ChangesSequenced(publishedSeq));
+            }
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    /** Deletes the changes numbered more than {@code changes.retention} ago, oldest first. */
+    @Scheduled(fixedDelayString = "${changes.prune.interval}")
+    public void prune() {
+        pruneLock.lock();
+        try {
+            OffsetDateTime cutoff = OffsetDateTime.now().minus(retention);
+            int pruned = 0;
+            List<Long> chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> {
+                    List<Long> deleted = jdbcTemplate.queryForList(PRUNE_SQL, Long.class, pruneChunkSize, cutoff);
+                    if (!deleted.isEmpty()) {
+                        jdbcTemplate.update(PRUNED_SQL, deleted.stream().mapToLong(Long::longValue).max().getAsLong());
+                    }
+                    return deleted;
+                });
+                pruned += chunk.size();
+            } while (chunk.size() == pruneChunkSize);
+            if (pruned > 0) {
+                log.info("Pruned {} changes numbered before {}", pruned, cutoff);
+            }
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+}
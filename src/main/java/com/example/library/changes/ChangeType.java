@@ -0,0 +1,12 @@
+package com.example.library.changes;
+
+public enum ChangeType {
+    BOOK_CREATED,
+    BOOK_UPDATED,
+    BOOK_DELETED,
+    MEMBER_CREATED,
+    MEMBER_UPDATED,
+    MEMBER_DELETED,
+    BOOK_BORROWED,
+    BOOK_RETURNED
+}
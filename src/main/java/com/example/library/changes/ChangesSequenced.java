@@ -0,0 +1,8 @@
+package com.example.library.changes;
+
+/**
+ * Published by the {@link ChangeSequencer} after a run that gave new changes their offsets, up to
+ * and including {@code lastSeq}. Listeners run in the sequencer's thread.
+ */
+public record ChangesSequenced(long lastSeq) {
+}
@@ -0,0 +1,52 @@
+package com.example.library.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * In-process caches for single-entity lookups. Each cache is configured under
+ * {@code cache.<name>.enabled|max-size|ttl}; a disabled cache is replaced by a no-op one, so the
+ * caching annotations stay in place either way.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOKS = "books";
+    public static final String MEMBERS = "members";
+
+    @Bean
+    public CacheManager cacheManager(Environment environment) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        // An empty name list switches off on-demand creation: only the caches registered below exist.
+        caffeineCacheManager.setCacheNames(List.of());
+        for (String name : List.of(BOOKS, MEMBERS)) {
+            String prefix = "cache." + name + ".";
+            if (!environment.getProperty(prefix + "enabled", Boolean.class, true)) {
+                continue;
+            }
+            caffeineCacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                    .maximumSize(environment.getProperty(prefix + "max-size", Long.class, 10_000L))
+                    .expireAfterWrite(environment.getProperty(prefix + "ttl", Duration.class, Duration.ofMinutes(10)))
+                    .recordStats()
+                    .build());
+        }
+
+        CompositeCacheManager compositeCacheManager =
+                new CompositeCacheManager(caffeineCacheManager, new NoOpCacheManager());
+        // Evictions issued inside a transaction are applied only after it commits, so a concurrent
+        // reader cannot put the pre-commit row back into the cache.
+        return new TransactionAwareCacheManagerProxy(compositeCacheManager);
+    }
+}
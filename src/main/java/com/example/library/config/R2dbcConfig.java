@@ -0,0 +1,57 @@
+package com.example.library.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * R2DBC access for the read-only {@code /api/v2} endpoints. Only the {@link DatabaseClient} is
+ * a bean: Spring Boot backs off its JDBC DataSource as soon as a ConnectionFactory bean exists,
+ * and JPA and every write stay on that DataSource.
+ */
+@Configuration
+public class R2dbcConfig {
+
+    @Bean
+    public ReactivePool reactivePool(@Value("${r2dbc.url}") String url,
+                                     @Value("${r2dbc.username}") String username,
+                                     @Value("${r2dbc.password}") String password,
+                                     @Value("${r2dbc.pool.max-size}") int maxSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        return new ReactivePool(new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .maxSize(maxSize)
+                .build()));
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ReactivePool reactivePool) {
+        return DatabaseClient.create(reactivePool.pool);
+    }
+
+    /**
+     * Owns the pool so it is closed with the context without being a ConnectionFactory bean itself.
+     */
+    public static final class ReactivePool implements DisposableBean {
+
+        private final ConnectionPool pool;
+
+        ReactivePool(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void destroy() {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.library.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs: journal flushes, change numbering, inventory write-back,
+ * overdue scans, archiving, borrow statistics reconciliation and the availability streams.
+ * {@code scheduling.enabled=false} leaves them to be called directly, as the tests do, so no job
+ * is left waiting for a connection while the database goes away underneath it.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
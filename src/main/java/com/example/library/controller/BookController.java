@@ -1,12 +1,22 @@
 package com.example.library.controller;
 
+import com.example.library.availability.AvailabilityBroadcaster;
 import com.example.library.dto.BookDTO;
+import com.example.library.dto.BookImportResultDTO;
+import com.example.library.service.BookImportService;
 import com.example.library.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -15,15 +25,53 @@ import java.util.List;
 public class BookController {
 
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final ObjectMapper objectMapper;
+    private final ConditionalGet conditionalGet;
+    private final AvailabilityBroadcaster availabilityBroadcaster;
 
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks() {
-        return ResponseEntity.ok(bookService.listBooks());
+    public ResponseEntity<List<BookDTO>> getAllBooks(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = ConditionalGet.etag(bookService.getCatalogueVersion(), bookService.getInMemoryStockChanges());
+        return conditionalGet.respond(ifNoneMatch, etag, () -> bookService.listBooks(after, size), books -> etag);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        StreamingResponseBody body = NdjsonStreams.stream(objectMapper, bookService::streamBooks);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<BookDTO>> searchBooks(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.searchBooks(q, page, size));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<BookDTO> getBookById(@PathVariable Long id) {
-        return ResponseEntity.ok(bookService.getBookById(id));
+    public ResponseEntity<BookDTO> getBookById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long stockChanges = bookService.getInMemoryStockChanges();
+        return conditionalGet.respond(ifNoneMatch,
+                ConditionalGet.etag(bookService.getBookVersion(id), stockChanges),
+                () -> bookService.getBookById(id),
+                book -> ConditionalGet.etag(book.getVersion(), stockChanges));
+    }
+
+    /**
+     * Server-sent events with the copies available to borrow: the current count first, then the
+     * new count after loans, returns and edits change it.
+     */
+    @GetMapping(value = "/{id}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@PathVariable Long id) {
+        return availabilityBroadcaster.subscribe(id);
     }
 
     @PostMapping
@@ -31,6 +79,16 @@ public class BookController {
         return ResponseEntity.ok(bookService.addBook(bookDTO));
     }
 
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<BookImportResultDTO> importBooksCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(bookImportService.importCsv(body));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BookImportResultDTO> importBooksNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(bookImportService.importNdjson(body));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<BookDTO> updateBook(@PathVariable Long id, @RequestBody @Valid BookDTO bookDTO) {
         return ResponseEntity.ok(bookService.updateBook(id, bookDTO));
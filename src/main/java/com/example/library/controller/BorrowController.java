@@ -1,6 +1,10 @@
 package com.example.library.controller;
 
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
 import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.dto.HoldDTO;
+import com.example.library.dto.OverdueLoanDTO;
 import com.example.library.service.BorrowService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -24,6 +28,42 @@ public class BorrowController {
         borrowService.returnBook(memberId, bookId);
     }
 
+    @PostMapping("/batch")
+    public List<BorrowResultDTO> borrowBooks(@RequestBody List<BorrowRequestDTO> requests) {
+        return borrowService.borrowBooks(requests);
+    }
+
+    @PostMapping("/return/batch")
+    public List<BorrowResultDTO> returnBooks(@RequestBody List<BorrowRequestDTO> requests) {
+        return borrowService.returnBooks(requests);
+    }
+
+    /**
+     * Queues the member for the next copy of a book that has none left; the copy is lent to them
+     * when it is returned. Rejected while copies are still available. While the member is at the
+     * loan limit, copies go to the holds behind theirs and the hold keeps its place.
+     */
+    @PostMapping("/hold/{memberId}/{bookId}")
+    public HoldDTO placeHold(@PathVariable Long memberId, @PathVariable Long bookId) {
+        return borrowService.placeHold(memberId, bookId);
+    }
+
+    @DeleteMapping("/hold/{memberId}/{bookId}")
+    public void cancelHold(@PathVariable Long memberId, @PathVariable Long bookId) {
+        borrowService.cancelHold(memberId, bookId);
+    }
+
+    /**
+     * The book's holds in the order they will be served, paged after the hold id {@code after};
+     * includes the holds of members at the loan limit, which are passed over until they are not.
+     */
+    @GetMapping("/hold/{bookId}")
+    public List<HoldDTO> getHolds(@PathVariable Long bookId,
+                                  @RequestParam(required = false) Long after,
+                                  @RequestParam(defaultValue = "50") int size) {
+        return borrowService.getHolds(bookId, after, size);
+    }
+
     @GetMapping("/member")
     public List<String> getBooksBorrowedByMember(@RequestParam String name) {
         return borrowService.getBorrowedBooksByMemberName(name);
@@ -34,6 +74,12 @@ public class BorrowController {
         return borrowService.getDistinctBorrowedBooks();
     }
 
+    @GetMapping("/overdue")
+    public List<OverdueLoanDTO> getOverdueLoans(@RequestParam(required = false) Long after,
+                                                @RequestParam(defaultValue = "50") int size) {
+        return borrowService.getOverdueLoans(after, size);
+    }
+
     @GetMapping("/stats")
     public List<BorrowedBookStatDTO> getBorrowedBookNamesWithCount() {
         return borrowService.getBorrowedBookStats();
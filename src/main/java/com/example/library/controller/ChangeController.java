@@ -0,0 +1,37 @@
+package com.example.library.controller;
+
+import com.example.library.dto.ChangeDTO;
+import com.example.library.service.ChangeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/changes")
+@RequiredArgsConstructor
+public class ChangeController {
+
+    private final ChangeService changeService;
+
+    /**
+     * Changes after offset {@code since}, in order. With nothing new, waits up to {@code wait}
+     * milliseconds (capped by {@code changes.poll.max-wait}) for the next change before answering
+     * with an empty list.
+     */
+    @GetMapping
+    public CompletableFuture<List<ChangeDTO>> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                         @RequestParam(defaultValue = "100") int size,
+                                                         @RequestParam(defaultValue = "25000") long wait,
+                                                         @RequestParam(required = false) String consumer) {
+        return changeService.getChanges(since, size, wait, consumer);
+    }
+
+    /** The offset of the last change; a new consumer reads the current state after it and continues from it. */
+    @GetMapping("/head")
+    public Map<String, Long> getHead() {
+        return Map.of("offset", changeService.getHead());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.library.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Answers GET requests conditionally on strong ETags built from version numbers. The current tag
+ * is read before the body, so a client that already holds the representation gets a 304 without
+ * it being read, mapped or serialized.
+ */
+@Component
+class ConditionalGet {
+
+    private final CacheControl cacheControl;
+
+    ConditionalGet(@Value("${http.cache-control.max-age}") Duration maxAge) {
+        this.cacheControl = maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge);
+    }
+
+    static String etag(long... versions) {
+        return Arrays.stream(versions)
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(".", "\"", "\""));
+    }
+
+    /**
+     * @param ifNoneMatch the request's {@code If-None-Match} header, or null
+     * @param etag        the current tag
+     * @param read        reads the representation, called only if {@code etag} does not match
+     * @param etagOf      the tag of the representation read, which trails {@code etag} when the
+     *                    representation came from a cache not yet evicted
+     */
+    <T> ResponseEntity<T> respond(String ifNoneMatch, String etag, Supplier<T> read, Function<T, String> etagOf) {
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        T body = read.get();
+        return ResponseEntity.ok().eTag(etagOf.apply(body)).cacheControl(cacheControl).body(body);
+    }
+
+    /** If-None-Match compares weakly, so a tag a proxy marked weak still matches. */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.strip();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
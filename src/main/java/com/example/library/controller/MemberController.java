@@ -1,12 +1,19 @@
 package com.example.library.controller;
 
+import com.example.library.dto.LoanHistoryDTO;
 import com.example.library.dto.MemberDTO;
 import com.example.library.service.MemberService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -15,15 +22,41 @@ import java.util.List;
 public class MemberController {
 
     private final MemberService memberService;
+    private final ObjectMapper objectMapper;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public ResponseEntity<List<MemberDTO>> getAllMembers() {
-        return ResponseEntity.ok(memberService.getAllMembers());
+    public ResponseEntity<List<MemberDTO>> getAllMembers(@RequestParam(required = false) Long after,
+                                                         @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(memberService.getAllMembers(after, size));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMembers() {
+        StreamingResponseBody body = NdjsonStreams.stream(objectMapper, memberService::streamMembers);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<MemberDTO> getMemberById(@PathVariable Long id) {
-        return ResponseEntity.ok(memberService.getMemberById(id));
+    public ResponseEntity<MemberDTO> getMemberById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return conditionalGet.respond(ifNoneMatch,
+                ConditionalGet.etag(memberService.getMemberVersion(id)),
+                () -> memberService.getMemberById(id),
+                member -> ConditionalGet.etag(member.getVersion()));
+    }
+
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<LoanHistoryDTO>> getBorrowHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(memberService.getBorrowHistory(id, from, to, after, size));
     }
 
     @PostMapping
@@ -0,0 +1,29 @@
+package com.example.library.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes rows as newline-delimited JSON while they are being read, so a response never holds
+ * more than the row currently being serialized.
+ */
+final class NdjsonStreams {
+
+    private NdjsonStreams() {
+    }
+
+    static <T> StreamingResponseBody stream(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> source.accept(row -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(row));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
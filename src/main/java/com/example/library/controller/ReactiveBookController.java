@@ -0,0 +1,37 @@
+package com.example.library.controller;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.service.ReactiveCatalogueService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-only catalogue API on R2DBC. Requests are completed asynchronously, so no servlet thread
+ * is held while the database works; writes go through {@link BookController}.
+ */
+@RestController
+@RequestMapping("/api/v2/books")
+@RequiredArgsConstructor
+public class ReactiveBookController {
+
+    private final ReactiveCatalogueService reactiveCatalogueService;
+
+    @GetMapping
+    public Flux<BookDTO> getBooks(@RequestParam(required = false) Long after,
+                                  @RequestParam(defaultValue = "50") int size) {
+        return reactiveCatalogueService.listBooks(after, size);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookDTO> streamBooks(@RequestParam(required = false) Long after) {
+        return reactiveCatalogueService.streamBooks(after);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<BookDTO> getBookById(@PathVariable Long id) {
+        return reactiveCatalogueService.getBookById(id);
+    }
+}
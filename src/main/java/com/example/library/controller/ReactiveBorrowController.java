@@ -0,0 +1,22 @@
+package com.example.library.controller;
+
+import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.service.ReactiveCatalogueService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/v2/borrow")
+@RequiredArgsConstructor
+public class ReactiveBorrowController {
+
+    private final ReactiveCatalogueService reactiveCatalogueService;
+
+    @GetMapping("/stats")
+    public Flux<BorrowedBookStatDTO> getBorrowedBookStats() {
+        return reactiveCatalogueService.getBorrowedBookStats();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AvailabilityDTO {
+    private Long bookId;
+    /** Copies that can be borrowed now. */
+    private int available;
+}
@@ -1,5 +1,6 @@
 package com.example.library.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
@@ -24,4 +25,8 @@ public class BookDTO {
 
     @Min(value = 0, message = "Amount must be non-negative")
     private int amount;
+
+    /** The book's version when it was read; ignored when writing. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
 }
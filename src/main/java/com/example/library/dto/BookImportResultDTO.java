@@ -0,0 +1,15 @@
+package com.example.library.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BookImportResultDTO {
+    private long processed;
+    private long imported;
+    private long rejected;
+    private int chunks;
+    private List<String> errors = new ArrayList<>();
+}
@@ -0,0 +1,13 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowRequestDTO {
+    private Long memberId;
+    private Long bookId;
+}
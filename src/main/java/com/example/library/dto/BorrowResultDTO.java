@@ -0,0 +1,13 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BorrowResultDTO {
+    private Long memberId;
+    private Long bookId;
+    private boolean success;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class ChangeDTO {
+    /** Position in the feed; pass the last one read as {@code since} to get the changes after it. */
+    private long offset;
+    private String type;
+    private Long bookId;
+    private Long memberId;
+    /** The new state of a created or updated book or member, as JSON; null otherwise. */
+    @JsonRawValue
+    private String payload;
+    private Instant changedAt;
+}
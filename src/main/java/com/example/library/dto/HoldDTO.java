@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class HoldDTO {
+    /** Grows with every hold placed; a book's holds are served in this order. */
+    private Long id;
+    private Long memberId;
+    private Long bookId;
+    private Instant placedAt;
+}
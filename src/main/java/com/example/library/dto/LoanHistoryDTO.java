@@ -0,0 +1,17 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LoanHistoryDTO {
+    private Long loanId;
+    private Long bookId;
+    private String bookTitle;
+    private LocalDate borrowDate;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+}
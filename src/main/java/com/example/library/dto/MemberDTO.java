@@ -1,5 +1,6 @@
 package com.example.library.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
@@ -15,4 +16,8 @@ public class MemberDTO {
 
     private LocalDate membershipDate;
     private Set<Long> borrowedBookIds;
+
+    /** The member's version when they were read; ignored when writing. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
 }
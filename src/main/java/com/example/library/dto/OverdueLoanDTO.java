@@ -0,0 +1,18 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class OverdueLoanDTO {
+    private Long loanId;
+    private Long memberId;
+    private String memberName;
+    private Long bookId;
+    private String bookTitle;
+    private LocalDate borrowDate;
+    private LocalDate dueDate;
+}
@@ -4,9 +4,12 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.util.List;
-
+/**
+ * A catalogue title. Loans refer to their book but are not mapped from it, so loading a book
+ * never reaches its loan history; see {@link Borrow}.
+ */
 @Entity
 @Data
 @NoArgsConstructor
@@ -14,7 +17,8 @@ import java.util.List;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -23,6 +27,9 @@ public class Book {
 
     private int amount;
 
-    @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Borrow> borrows;
+    /** Incremented on every write, including the bulk update statements in the repositories. */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 }
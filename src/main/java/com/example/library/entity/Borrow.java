@@ -1,29 +1,41 @@
 package com.example.library.entity;
 
 import jakarta.persistence.*;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDate;
 
+/**
+ * One loan. The member and book are loaded only when used, and are left out of
+ * {@code toString}, so a loan never pulls in more than its own row. Identity is the entity's,
+ * rather than Lombok's field-by-field equality, which would have to load both.
+ */
 @Entity
-@Data
+@Getter
+@Setter
+@ToString(exclude = {"member", "book"})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Borrow {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrow_seq")
+    @SequenceGenerator(name = "borrow_seq", sequenceName = "borrow_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Member member;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Book book;
 
     private LocalDate borrowDate;
 
+    private LocalDate dueDate;
+
     private LocalDate returnDate;
 }
@@ -4,24 +4,35 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
-
+/**
+ * A library member. Like {@link Book}, a member does not map its loans; they are read through
+ * the borrow repository, a page at a time.
+ */
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Member {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 50)
     private Long id;
 
     private String name;
 
     private LocalDate membershipDate;
 
-    @OneToMany(mappedBy = "member", cascade = CascadeType.ALL, orphanRemoval = true)
-    private Set<Borrow> borrows = new HashSet<>();
+    /** Number of loans not yet returned, maintained by the borrow/return statements. */
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int activeLoans;
+
+    /** Incremented on every write, including the bulk update statements in the repositories. */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 }
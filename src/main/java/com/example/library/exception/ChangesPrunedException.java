@@ -0,0 +1,12 @@
+package com.example.library.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** The changes after the requested offset are no longer all kept; the consumer has to start over. */
+@ResponseStatus(HttpStatus.GONE)
+public class ChangesPrunedException extends RuntimeException {
+    public ChangesPrunedException(String message) {
+        super(message);
+    }
+}
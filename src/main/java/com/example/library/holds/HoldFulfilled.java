@@ -0,0 +1,8 @@
+package com.example.library.holds;
+
+/**
+ * Published once a copy given to the member at the head of a book's hold queue has been lent to
+ * them and committed. Listeners (notifications) run in the thread that committed the loan.
+ */
+public record HoldFulfilled(Long memberId, Long bookId) {
+}
@@ -0,0 +1,93 @@
+package com.example.library.holds;
+
+import com.example.library.dto.HoldDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The hold queues in {@code book_hold}, one per book, each served oldest hold first. Every
+ * operation is a single statement on the queue's index, whatever the length of the queue. Used
+ * inside the borrow service's transactions.
+ */
+@Component
+@RequiredArgsConstructor
+public class HoldQueue {
+
+    private static final String ADD_SQL =
+            "INSERT INTO book_hold (book_id, member_id) VALUES (?, ?) "
+                    + "ON CONFLICT ON CONSTRAINT uq_book_hold_member DO NOTHING RETURNING id, placed_at";
+
+    /** Locks the oldest hold after the given one that no other transaction is serving. */
+    private static final String NEXT_SQL =
+            "SELECT id, member_id, book_id, placed_at FROM book_hold WHERE book_id = ? AND id > ? "
+                    + "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED";
+
+    private static final String REMOVE_SQL = "DELETE FROM book_hold WHERE id = ?";
+
+    private static final String CANCEL_SQL = "DELETE FROM book_hold WHERE book_id = ? AND member_id = ?";
+
+    private static final String LIST_SQL =
+            "SELECT id, member_id, book_id, placed_at FROM book_hold WHERE book_id = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String HELD_SQL = "SELECT DISTINCT book_id FROM book_hold WHERE book_id = ANY(?)";
+
+    private static final RowMapper<HoldDTO> HOLD = (rs, row) -> new HoldDTO(rs.getLong(1), rs.getLong(2),
+            rs.getLong(3), rs.getObject(4, OffsetDateTime.class).toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Puts the member at the end of the book's queue.
+     *
+     * @return the new hold, or empty if the member already holds the book
+     */
+    public Optional<HoldDTO> add(Long memberId, Long bookId) {
+        return jdbcTemplate.query(ADD_SQL,
+                (rs, row) -> new HoldDTO(rs.getLong(1), memberId, bookId,
+                        rs.getObject(2, OffsetDateTime.class).toInstant()),
+                bookId, memberId).stream().findFirst();
+    }
+
+    /**
+     * The first hold in the book's queue after hold {@code afterId}, locked until the transaction
+     * ends, so concurrent callers get different holds. It stays queued until {@link #remove}.
+     */
+    public Optional<HoldDTO> next(Long bookId, long afterId) {
+        return jdbcTemplate.query(NEXT_SQL, HOLD, bookId, afterId).stream().findFirst();
+    }
+
+    /** Takes a served hold off its queue. */
+    public void remove(Long holdId) {
+        jdbcTemplate.update(REMOVE_SQL, holdId);
+    }
+
+    /** @return false if the member did not hold the book */
+    public boolean cancel(Long memberId, Long bookId) {
+        return jdbcTemplate.update(CANCEL_SQL, bookId, memberId) > 0;
+    }
+
+    /** The book's holds after hold {@code afterId}, in the order they will be served. */
+    public List<HoldDTO> list(Long bookId, long afterId, int limit) {
+        return jdbcTemplate.query(LIST_SQL, HOLD, bookId, afterId, limit);
+    }
+
+    /** The books among {@code bookIds} with at least one hold queued, in one statement. */
+    public List<Long> heldBooks(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(HELD_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", bookIds.toArray()));
+            return statement;
+        }, (rs, row) -> rs.getLong(1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.library.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copies of one book held by the {@link InventoryEngine}, spread over striped counters so
+ * concurrent borrows of the same title rarely update the same counter.
+ * <p>
+ * Borrows and returns hold the read lock from taking or announcing a copy until their transaction
+ * completes. Writing the allotment to the database takes the write lock, so the count written
+ * always matches the committed loans.
+ */
+final class Allotment {
+
+    private final AtomicIntegerArray stripes;
+    private final LongAdder changes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    /**
+     * @param changes counted up after every change of the copies held, once the change is visible
+     */
+    Allotment(int stripeCount, LongAdder changes) {
+        stripes = new AtomicIntegerArray(stripeCount);
+        this.changes = changes;
+    }
+
+    /**
+     * Takes one copy, trying every stripe once starting from a random one.
+     *
+     * @return false if every stripe was empty
+     */
+    boolean tryTake() {
+        int count = stripes.length();
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count; i++) {
+            int stripe = (start + i) % count;
+            int copies;
+            while ((copies = stripes.get(stripe)) > 0) {
+                if (stripes.compareAndSet(stripe, copies, copies - 1)) {
+                    dirty = true;
+                    changes.increment();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Adds copies, spread evenly over the stripes. */
+    void put(int copies) {
+        int count = stripes.length();
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count && i < copies; i++) {
+            stripes.addAndGet((start + i) % count, copies / count + (i < copies % count ? 1 : 0));
+        }
+        dirty = true;
+        changes.increment();
+    }
+
+    int held() {
+        int held = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            held += stripes.get(i);
+        }
+        return held;
+    }
+
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    /** True while the current thread holds the write lock, e.g. for a release not yet committed. */
+    boolean isWriteLockedByCurrentThread() {
+        return lock.isWriteLockedByCurrentThread();
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void markClean() {
+        dirty = false;
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.library.inventory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional in-memory stock for borrowing (inventory.engine.enabled). Copies are reserved from
+ * {@code book.amount} in blocks and then lent without touching the book row, so borrows of a
+ * bestseller no longer queue on its row lock. A copy is only ever lent after the database moved
+ * it out of {@code amount}, so the engine cannot oversell.
+ * <p>
+ * The copies held for each book are written back to {@code book.reserved} periodically, together
+ * with the open loan count at that moment. After a crash, startup returns to {@code amount} what
+ * was held at the last write minus the loans opened since, net of returns; copies in flight at
+ * the crash err towards being kept off the shelf. The engine assumes it is the only writer of
+ * these books' stock, i.e. a single application instance.
+ */
+@Slf4j
+@Component
+public class InventoryEngine implements DisposableBean {
+
+    /** Moves up to a block of copies from the shelf to the engine; returns how many were moved. */
+    private static final String RESERVE_SQL =
+            "UPDATE book b SET amount = b.amount - r.copies, reserved = b.reserved + r.copies, "
+                    + "version = b.version + 1 "
+                    + "FROM (SELECT id, LEAST(amount, ?) AS copies FROM book WHERE id = ? FOR UPDATE) r "
+                    + "WHERE b.id = r.id AND r.copies > 0 RETURNING r.copies";
+
+    private static final String OPEN_LOANS = "(SELECT COUNT(*) FROM borrow w WHERE w.book_id = b.id AND w.return_date IS NULL)";
+
+    private static final String MANAGE_SQL =
+            "UPDATE book b SET reserved_open_loans = " + OPEN_LOANS + " WHERE b.id = ?";
+
+    private static final String WRITE_BACK_SQL =
+            "UPDATE book b SET reserved = ?, reserved_open_loans = " + OPEN_LOANS + " WHERE b.id = ?";
+
+    private static final String RELEASE_SQL =
+            "UPDATE book SET amount = amount + ?, reserved = 0, reserved_open_loans = NULL, version = version + 1 "
+                    + "WHERE id = ?";
+
+    private static final String RECOVER_SQL =
+            "UPDATE book b SET amount = b.amount + GREATEST(0, b.reserved - (" + OPEN_LOANS + " - b.reserved_open_loans)), "
+                    + "reserved = 0, reserved_open_loans = NULL, version = b.version + 1 "
+                    + "WHERE b.reserved_open_loans IS NOT NULL";
+
+    private static final long WRITE_BACK_WAIT_MILLIS = 50;
+    private static final long RELEASE_WAIT_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Allotment> allotments = new ConcurrentHashMap<>();
+    private final int stripeCount = Runtime.getRuntime().availableProcessors();
+    private final LongAdder changes = new LongAdder();
+
+    @Value("${inventory.engine.enabled}")
+    private boolean enabled;
+
+    @Value("${inventory.engine.block.size}")
+    private int blockSize;
+
+    public InventoryEngine(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gives reservations left behind by a previous run back to the shelf. Runs whether or not the
+     * engine is enabled, so switching it off never strands copies.
+     */
+    @PostConstruct
+    void recover() {
+        int books = jdbcTemplate.update(RECOVER_SQL);
+        if (books > 0) {
+            log.info("Returned copies reserved by a previous run of the inventory engine for {} books", books);
+        }
+    }
+
+    /**
+     * Takes a copy for a loan in the current transaction. Once the engine has run dry, the next
+     * block is reserved in the same transaction: it serializes on the book row once per block
+     * instead of once per borrow, and its copies join the engine only when the loan commits.
+     * If the transaction rolls back, a copy taken from the engine goes back to it.
+     *
+     * @return false if the book has no copies left or does not exist
+     */
+    public boolean take(Long bookId) {
+        Allotment allotment = enter(bookId);
+        if (allotment == null) {
+            return false;
+        }
+        boolean fromAllotment = allotment.tryTake();
+        int reserved = fromAllotment ? 0 : reserve(bookId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED && reserved > 1) {
+                    allotment.put(reserved - 1);
+                }
+                // With an unknown outcome the loan may exist, so the copy stays taken.
+                if (fromAllotment && status == STATUS_ROLLED_BACK) {
+                    allotment.put(1);
+                }
+                allotment.readLock().unlock();
+            }
+        });
+        return fromAllotment || reserved > 0;
+    }
+
+    /** Puts a returned copy back into the engine once the current transaction commits. */
+    public void putBack(Long bookId) {
+        Allotment allotment = enter(bookId);
+        if (allotment == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    allotment.put(1);
+                }
+                allotment.readLock().unlock();
+            }
+        });
+    }
+
+    /** Copies of the book currently held by the engine, in addition to {@code book.amount}. */
+    public int available(Long bookId) {
+        Allotment allotment = allotments.get(bookId);
+        return allotment == null || allotment.isClosed() ? 0 : allotment.held();
+    }
+
+    /**
+     * A count that grows after every change of the copies held for any book, so a reader that sees
+     * it unchanged has seen no change to {@link #available}.
+     */
+    public long changes() {
+        return changes.sum();
+    }
+
+    /**
+     * Puts every copy the engine holds for the book back on the shelf and stops managing it, so
+     * {@code book.amount} is the whole stock again; used before the book is edited or deleted.
+     * Runs in the caller's transaction, on its connection, and keeps borrowers of the book out
+     * until that transaction ends; if it rolls back, the engine keeps managing the copies.
+     */
+    public void release(Long bookId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory changes must run in a transaction");
+        }
+        Allotment allotment = allotments.get(bookId);
+        // Already released in this transaction, which still holds the lock.
+        if (allotment == null || allotment.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        if (!tryLock(allotment, RELEASE_WAIT_MILLIS)) {
+            throw new IllegalStateException("Book " + bookId + " is being borrowed too often to change it right now");
+        }
+        boolean registered = false;
+        try {
+            if (!allotment.isClosed()) {
+                jdbcTemplate.update(RELEASE_SQL, allotment.held(), bookId);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // With an unknown outcome the copies may be on the shelf, so the engine lets them go.
+                    if (status != STATUS_ROLLED_BACK) {
+                        allotment.close();
+                        allotments.remove(bookId, allotment);
+                    }
+                    allotment.writeLock().unlock();
+                }
+            });
+            registered = true;
+        } finally {
+            if (!registered) {
+                allotment.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the copies held for every changed book back to the database. A book that cannot be
+     * locked quickly, because borrows keep arriving, is written on a later run.
+     */
+    @Scheduled(fixedDelayString = "${inventory.engine.flush.interval}")
+    public void writeBack() {
+        allotments.forEach((bookId, allotment) -> {
+            if (!allotment.isDirty()) {
+                return;
+            }
+            try {
+                locked(allotment, WRITE_BACK_WAIT_MILLIS, () -> {
+                    if (!allotment.isClosed()) {
+                        jdbcTemplate.update(WRITE_BACK_SQL, allotment.held(), bookId);
+                        allotment.markClean();
+                    }
+                });
+            } catch (DataAccessException e) {
+                allotment.markDirty();
+                log.warn("Could not write back the inventory of book {}", bookId, e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        allotments.forEach((bookId, allotment) -> {
+            try {
+                locked(allotment, RELEASE_WAIT_MILLIS, () -> releaseLocked(bookId, allotment));
+            } catch (DataAccessException e) {
+                log.warn("Could not release the inventory of book {}; it is recovered on the next start", bookId, e);
+            }
+        });
+    }
+
+    /** Forgets every allotment without writing it back, as a crash would. */
+    void abandon() {
+        allotments.values().forEach(Allotment::close);
+        allotments.clear();
+    }
+
+    /**
+     * The book's allotment with its read lock held until the current transaction completes,
+     * or null if the book does not exist.
+     */
+    private Allotment enter(Long bookId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory changes must run in a transaction");
+        }
+        while (true) {
+            Allotment allotment = allotments.get(bookId);
+            if (allotment == null) {
+                allotment = open(bookId);
+                if (allotment == null) {
+                    return null;
+                }
+            }
+            allotment.readLock().lock();
+            if (!allotment.isClosed()) {
+                return allotment;
+            }
+            allotment.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts managing the book with an empty allotment, recording its open loan count in the
+     * current transaction. Until that is done, the new allotment's write lock keeps borrowers out.
+     */
+    private Allotment open(Long bookId) {
+        Allotment created = new Allotment(stripeCount, changes);
+        created.writeLock().lock();
+        try {
+            Allotment existing = allotments.putIfAbsent(bookId, created);
+            if (existing != null) {
+                return existing;
+            }
+            boolean opened = false;
+            try {
+                opened = jdbcTemplate.update(MANAGE_SQL, bookId) == 1;
+            } finally {
+                if (!opened) {
+                    created.close();
+                    allotments.remove(bookId, created);
+                }
+            }
+            return opened ? created : null;
+        } finally {
+            created.writeLock().unlock();
+        }
+    }
+
+    /** Moves the next block of copies off the shelf in the current transaction; 0 if none are left. */
+    private int reserve(Long bookId) {
+        List<Integer> reserved = jdbcTemplate.queryForList(RESERVE_SQL, Integer.class, blockSize, bookId);
+        return reserved.isEmpty() ? 0 : reserved.get(0);
+    }
+
+    private void releaseLocked(Long bookId, Allotment allotment) {
+        if (allotment.isClosed()) {
+            return;
+        }
+        jdbcTemplate.update(RELEASE_SQL, allotment.held(), bookId);
+        allotment.close();
+        allotments.remove(bookId, allotment);
+    }
+
+    /**
+     * Runs the action in a transaction of its own under the allotment's write lock; only called
+     * outside any transaction. The transaction, and with it a connection, is started before
+     * waiting for the lock: borrowers queued behind the lock hold connections of their own and
+     * could otherwise drain the pool. If the commit fails after a release, the copies stay
+     * reserved until the next start recovers them.
+     *
+     * @return false if the lock was not acquired within the given time
+     */
+    private boolean locked(Allotment allotment, long waitMillis, Runnable action) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!tryLock(allotment, waitMillis)) {
+                return false;
+            }
+            try {
+                action.run();
+                return true;
+            } finally {
+                allotment.writeLock().unlock();
+            }
+        }));
+    }
+
+    private static boolean tryLock(Allotment allotment, long waitMillis) {
+        try {
+            return allotment.writeLock().tryLock(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
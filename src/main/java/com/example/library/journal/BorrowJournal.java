@@ -0,0 +1,593 @@
+package com.example.library.journal;
+
+import com.example.library.changes.Change;
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.config.CacheConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind path for borrows and returns (borrow.journal.enabled). Each event is
+ * appended to a memory-mapped journal file and acknowledged once the file has been forced to
+ * disk; callers forcing at the same time share one force, so a burst of checkouts costs one sync
+ * instead of one database commit each. The events are applied to {@code borrow}, {@code member}
+ * and {@code book} in batches, one transaction per batch.
+ * <p>
+ * The member limit and stock checks still decide against the database: they add the events not
+ * yet applied to the counts read from it. {@code borrow_journal.applied_seq} is read in the same
+ * statement as those counts and advanced in the transaction that applies a batch, so every event
+ * is counted exactly once, and after a crash startup replays exactly the events never applied.
+ * Like the inventory engine, which it cannot be combined with, the journal assumes a single
+ * application instance.
+ */
+@Slf4j
+@Component
+public class BorrowJournal implements DisposableBean {
+
+    public enum Outcome {
+        RECORDED, MEMBER_NOT_FOUND, BOOK_NOT_FOUND, BEING_DELETED, MEMBER_LIMIT_REACHED, OUT_OF_STOCK, NOT_BORROWED
+    }
+
+    private static final String BORROW_CHECK_SQL =
+            "SELECT m.active_loans, b.amount, j.applied_seq FROM member m, book b, borrow_journal j "
+                    + "WHERE m.id = ? AND b.id = ?";
+
+    private static final String RETURN_CHECK_SQL =
+            "SELECT (SELECT COUNT(*) FROM borrow WHERE member_id = ? AND book_id = ? AND return_date IS NULL), "
+                    + "applied_seq FROM borrow_journal";
+
+    private static final String INSERT_LOAN_SQL =
+            "INSERT INTO borrow (member_id, book_id, borrow_date, due_date) VALUES (?, ?, ?, ?)";
+
+    /** Closes the member's oldest open loan of the book, as {@code BorrowRepository.markReturned} does. */
+    private static final String CLOSE_LOAN_SQL =
+            "UPDATE borrow SET return_date = ? WHERE return_date IS NULL AND id = (SELECT MIN(id) FROM borrow "
+                    + "WHERE member_id = ? AND book_id = ? AND return_date IS NULL)";
+
+    private static final String MEMBER_LOANS_SQL =
+            "UPDATE member SET active_loans = active_loans + ?, version = version + 1 WHERE id = ?";
+
+    private static final String BOOK_LOANS_SQL =
+            "UPDATE book SET amount = amount - ?, version = version + 1 WHERE id = ?";
+
+    private static final String ADVANCE_SQL = "UPDATE borrow_journal SET applied_seq = ? WHERE id = 1";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate ownTransaction;
+    private final CacheManager cacheManager;
+    private final ChangeOutbox changeOutbox;
+
+    // Events not yet applied, per member, per book and per member and book, keyed by sequence
+    // number. Each map entry is guarded by the lock stripe of its member or book.
+    private final Map<Long, NavigableMap<Long, Integer>> memberLoans = new ConcurrentHashMap<>();
+    private final Map<Long, NavigableMap<Long, Integer>> bookLoans = new ConcurrentHashMap<>();
+    private final Map<LoanKey, NavigableMap<Long, Integer>> openLoans = new ConcurrentHashMap<>();
+    private final ReentrantLock[] memberLocks = stripes();
+    private final ReentrantLock[] bookLocks = stripes();
+    // Members and books closed to new loans by running deletes, with the number of those deletes.
+    private final Map<Long, Integer> closedMembers = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> closedBooks = new ConcurrentHashMap<>();
+
+    // Locks rather than synchronized: both are held across I/O, which would pin virtual threads.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /** Appended and not yet applied entries in sequence order; guarded by {@link #appendLock}. */
+    private final ArrayDeque<JournalEntry> unapplied = new ArrayDeque<>();
+    /** Counted up once entries have been tracked or forgotten, see {@link #changes()}. */
+    private final LongAdder changes = new LongAdder();
+
+    private volatile JournalFile file;
+    private volatile long lastSeq;
+    private volatile long durableSeq;
+    private volatile long appliedSeq;
+
+    @Value("${borrow.journal.enabled}")
+    private boolean enabled;
+
+    @Value("${borrow.journal.path}")
+    private String path;
+
+    @Value("${borrow.journal.capacity}")
+    private int capacity;
+
+    @Value("${borrow.journal.batch.size}")
+    private int batchSize;
+
+    @Value("${borrow.loan.days}")
+    private int loanDays;
+
+    @Value("${inventory.engine.enabled}")
+    private boolean inventoryEngineEnabled;
+
+    public BorrowJournal(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         CacheManager cacheManager, ChangeOutbox changeOutbox) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cacheManager = cacheManager;
+        this.changeOutbox = changeOutbox;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Opens the journal and applies every entry a previous run appended but did not apply.
+     */
+    @PostConstruct
+    void replay() {
+        if (!enabled) {
+            return;
+        }
+        if (inventoryEngineEnabled) {
+            throw new IllegalStateException("The borrow journal and the inventory engine cannot both be enabled");
+        }
+        try {
+            file = JournalFile.open(Path.of(path), capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the borrow journal " + path, e);
+        }
+        appliedSeq = jdbcTemplate.queryForObject("SELECT applied_seq FROM borrow_journal", Long.class);
+        long seq = appliedSeq;
+        JournalEntry entry;
+        while ((entry = file.read(seq + 1)) != null) {
+            unapplied.addLast(entry);
+            track(entry);
+            seq++;
+        }
+        lastSeq = seq;
+        durableSeq = seq;
+        if (!unapplied.isEmpty()) {
+            log.info("Replaying {} borrow journal entries not applied before the last shutdown", unapplied.size());
+            flush();
+        }
+    }
+
+    /**
+     * Appends a loan of the book to the member if they are below the limit and a copy is left.
+     * The loan is durable only after the next {@link #sync()}.
+     */
+    public Outcome recordBorrow(Long memberId, Long bookId, int memberLimit) {
+        ReentrantLock memberLock = memberLocks[stripe(memberId)];
+        ReentrantLock bookLock = bookLocks[stripe(bookId)];
+        memberLock.lock();
+        bookLock.lock();
+        try {
+            long[] counts = jdbcTemplate.query(BORROW_CHECK_SQL,
+                    rs -> rs.next() ? new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)} : null,
+                    memberId, bookId);
+            if (counts == null) {
+                return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM member WHERE id = ?)",
+                        Boolean.class, memberId) ? Outcome.BOOK_NOT_FOUND : Outcome.MEMBER_NOT_FOUND;
+            }
+            if (closedMembers.containsKey(memberId) || closedBooks.containsKey(bookId)) {
+                return Outcome.BEING_DELETED;
+            }
+            long applied = counts[2];
+            if (counts[0] + unappliedSum(memberLoans.get(memberId), applied) >= memberLimit) {
+                return Outcome.MEMBER_LIMIT_REACHED;
+            }
+            if (counts[1] - unappliedSum(bookLoans.get(bookId), applied) <= 0) {
+                return Outcome.OUT_OF_STOCK;
+            }
+            track(append(JournalEntry.Type.BORROW, memberId, bookId));
+            return Outcome.RECORDED;
+        } finally {
+            bookLock.unlock();
+            memberLock.unlock();
+        }
+    }
+
+    /**
+     * Refuses new loans to the member until the current transaction completes, then applies every
+     * entry appended so far. A member delete calls this before it checks for open loans, so no
+     * loan can be acknowledged after that check and then be rejected by the database once the
+     * member is gone.
+     *
+     * @throws IllegalStateException if no transaction is active
+     */
+    public void closeMemberForDelete(Long memberId) {
+        closeForDelete(closedMembers, memberLocks, memberId);
+    }
+
+    /**
+     * Refuses new loans of the book until the current transaction completes, then applies every
+     * entry appended so far, as {@link #closeMemberForDelete} does for a member.
+     *
+     * @throws IllegalStateException if no transaction is active
+     */
+    public void closeBookForDelete(Long bookId) {
+        closeForDelete(closedBooks, bookLocks, bookId);
+    }
+
+    /**
+     * Appends the return of the member's oldest open loan of the book, if there is one.
+     * The return is durable only after the next {@link #sync()}.
+     */
+    public Outcome recordReturn(Long memberId, Long bookId) {
+        ReentrantLock memberLock = memberLocks[stripe(memberId)];
+        ReentrantLock bookLock = bookLocks[stripe(bookId)];
+        memberLock.lock();
+        bookLock.lock();
+        try {
+            long[] counts = jdbcTemplate.query(RETURN_CHECK_SQL,
+                    rs -> rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : null,
+                    memberId, bookId);
+            if (counts[0] + unappliedSum(openLoans.get(new LoanKey(memberId, bookId)), counts[1]) <= 0) {
+                return Outcome.NOT_BORROWED;
+            }
+            track(append(JournalEntry.Type.RETURN, memberId, bookId));
+            return Outcome.RECORDED;
+        } finally {
+            bookLock.unlock();
+            memberLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once every entry appended so far is on disk. A caller arriving while another one
+     * forces the file waits for it and is then usually covered already, so concurrent callers
+     * share one force.
+     */
+    public void sync() {
+        long target = lastSeq;
+        if (durableSeq >= target) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (durableSeq >= target) {
+                return;
+            }
+            long covered = lastSeq;
+            file.force();
+            durableSeq = covered;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /** Copies of the book lent or returned by entries not yet applied to {@code book.amount}, net. */
+    public int unappliedLoans(Long bookId) {
+        if (!enabled) {
+            return 0;
+        }
+        ReentrantLock lock = bookLocks[stripe(bookId)];
+        lock.lock();
+        try {
+            return unappliedSum(bookLoans.get(bookId), 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A count that grows after every change of the unapplied loans of any book, so a reader that
+     * sees it unchanged has seen no change to {@link #unappliedLoans}.
+     */
+    public long changes() {
+        return changes.sum();
+    }
+
+    /**
+     * Applies every appended entry to the database, one transaction per batch. A batch the
+     * database rejects is applied entry by entry, and an entry it still rejects (such as a loan of
+     * a book deleted meanwhile) is logged and skipped; other failures leave the rest for the next run.
+     */
+    @Scheduled(fixedDelayString = "${borrow.journal.flush.interval}")
+    public void flush() {
+        if (file == null) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<JournalEntry> batch;
+            while (!(batch = nextBatch()).isEmpty() && apply(batch)) {
+                // next batch
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        JournalFile journalFile = file;
+        if (journalFile == null) {
+            return;
+        }
+        flush();
+        journalFile.close();
+        file = null;
+    }
+
+    /** Forgets everything not yet applied without flushing it, as a crash would. */
+    void abandon() {
+        flushLock.lock();
+        try {
+            file = null;
+            unapplied.clear();
+            memberLoans.clear();
+            bookLoans.clear();
+            openLoans.clear();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void closeForDelete(Map<Long, Integer> closed, ReentrantLock[] locks, Long id) {
+        if (file == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Loans can only be closed for a delete inside a transaction");
+        }
+        // Taken so that a borrow being checked right now is appended before the flush below.
+        ReentrantLock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            closed.merge(id, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                closed.computeIfPresent(id, (key, deletes) -> deletes > 1 ? deletes - 1 : null);
+            }
+        });
+        flush();
+    }
+
+    private JournalEntry append(JournalEntry.Type type, Long memberId, Long bookId) {
+        appendLock.lock();
+        try {
+            long seq = lastSeq + 1;
+            if (seq - file.capacity() > appliedSeq) {
+                throw new IllegalStateException("The borrow journal is full until pending entries have been applied");
+            }
+            JournalEntry entry = new JournalEntry(seq, type, memberId, bookId, LocalDate.now());
+            file.write(entry);
+            unapplied.addLast(entry);
+            lastSeq = seq;
+            return entry;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** Counts the entry as not yet applied; the caller holds its member and book stripes. */
+    private void track(JournalEntry entry) {
+        int delta = entry.loanDelta();
+        memberLoans.computeIfAbsent(entry.memberId(), id -> new TreeMap<>()).put(entry.seq(), delta);
+        bookLoans.computeIfAbsent(entry.bookId(), id -> new TreeMap<>()).put(entry.seq(), delta);
+        openLoans.computeIfAbsent(new LoanKey(entry.memberId(), entry.bookId()), key -> new TreeMap<>())
+                .put(entry.seq(), delta);
+        changes.increment();
+    }
+
+    private List<JournalEntry> nextBatch() {
+        appendLock.lock();
+        try {
+            List<JournalEntry> batch = new ArrayList<>(Math.min(batchSize, unapplied.size()));
+            for (JournalEntry entry : unapplied) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                batch.add(entry);
+            }
+            return batch;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the batch was left for the next run
+     */
+    private boolean apply(List<JournalEntry> batch) {
+        long seq = batch.get(batch.size() - 1).seq();
+        try {
+            ownTransaction.executeWithoutResult(status -> write(batch, seq));
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() > 1) {
+                for (JournalEntry entry : batch) {
+                    if (!apply(List.of(entry))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            log.error("Skipping borrow journal entry {}: the database rejects it", batch.get(0), e);
+            try {
+                ownTransaction.executeWithoutResult(status -> jdbcTemplate.update(ADVANCE_SQL, seq));
+            } catch (DataAccessException | TransactionException skipFailure) {
+                log.warn("Could not apply the borrow journal; retrying on the next run", skipFailure);
+                return false;
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not apply the borrow journal; retrying on the next run", e);
+            return false;
+        }
+        applied(batch, seq);
+        return true;
+    }
+
+    private void write(List<JournalEntry> batch, long seq) {
+        List<JournalEntry> borrows = new ArrayList<>();
+        List<JournalEntry> returns = new ArrayList<>();
+        for (JournalEntry entry : batch) {
+            (entry.type() == JournalEntry.Type.BORROW ? borrows : returns).add(entry);
+        }
+        // Sorted so that concurrent batches and edits lock the member and book rows in the same order.
+        Map<Long, Integer> memberDeltas = new TreeMap<>();
+        Map<Long, Integer> bookDeltas = new TreeMap<>();
+        // New loans get higher ids, so a return in the same batch still closes the oldest open loan.
+        if (!borrows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LOAN_SQL, borrows, borrows.size(), (ps, entry) -> {
+                ps.setLong(1, entry.memberId());
+                ps.setLong(2, entry.bookId());
+                ps.setObject(3, entry.date());
+                ps.setObject(4, entry.date().plusDays(loanDays));
+            });
+            for (JournalEntry entry : borrows) {
+                memberDeltas.merge(entry.memberId(), 1, Integer::sum);
+                bookDeltas.merge(entry.bookId(), 1, Integer::sum);
+            }
+        }
+        Set<JournalEntry> ignored = new HashSet<>();
+        if (!returns.isEmpty()) {
+            int[] closed = jdbcTemplate.batchUpdate(CLOSE_LOAN_SQL, returns, returns.size(), (ps, entry) -> {
+                ps.setObject(1, entry.date());
+                ps.setLong(2, entry.memberId());
+                ps.setLong(3, entry.bookId());
+            })[0];
+            for (int i = 0; i < closed.length; i++) {
+                JournalEntry entry = returns.get(i);
+                if (closed[i] == 0) {
+                    log.warn("Borrow journal entry {} returns a loan that is not open; ignoring it", entry);
+                    ignored.add(entry);
+                    continue;
+                }
+                memberDeltas.merge(entry.memberId(), -1, Integer::sum);
+                bookDeltas.merge(entry.bookId(), -1, Integer::sum);
+            }
+        }
+        updateLoans(MEMBER_LOANS_SQL, memberDeltas);
+        updateLoans(BOOK_LOANS_SQL, bookDeltas);
+        // After the row locks above, and in journal order, so the feed orders each book's loans as they happened.
+        changeOutbox.recordAll(batch.stream()
+                .filter(entry -> !ignored.contains(entry))
+                .map(entry -> entry.type() == JournalEntry.Type.BORROW
+                        ? Change.borrowed(entry.memberId(), entry.bookId())
+                        : Change.returned(entry.memberId(), entry.bookId()))
+                .toList());
+        jdbcTemplate.update(ADVANCE_SQL, seq);
+    }
+
+    private void updateLoans(String sql, Map<Long, Integer> deltas) {
+        List<Map.Entry<Long, Integer>> changed = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .toList();
+        if (!changed.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, changed, changed.size(), (ps, delta) -> {
+                ps.setInt(1, delta.getValue());
+                ps.setLong(2, delta.getKey());
+            });
+        }
+    }
+
+    /**
+     * Drops the applied entries from everything that counts them, and from the book and member
+     * caches: applying an entry moves both rows' versions.
+     */
+    private void applied(List<JournalEntry> batch, long seq) {
+        appliedSeq = seq;
+        appendLock.lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                unapplied.pollFirst();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        Cache members = cacheManager.getCache(CacheConfig.MEMBERS);
+        for (JournalEntry entry : batch) {
+            ReentrantLock memberLock = memberLocks[stripe(entry.memberId())];
+            memberLock.lock();
+            try {
+                forget(memberLoans, entry.memberId(), seq);
+                forget(openLoans, new LoanKey(entry.memberId(), entry.bookId()), seq);
+            } finally {
+                memberLock.unlock();
+            }
+            ReentrantLock bookLock = bookLocks[stripe(entry.bookId())];
+            bookLock.lock();
+            try {
+                forget(bookLoans, entry.bookId(), seq);
+            } finally {
+                bookLock.unlock();
+            }
+            if (books != null) {
+                books.evict(entry.bookId());
+            }
+            if (members != null) {
+                members.evict(entry.memberId());
+            }
+        }
+        changes.increment();
+    }
+
+    private static <K> void forget(Map<K, NavigableMap<Long, Integer>> loans, K key, long seq) {
+        NavigableMap<Long, Integer> bySeq = loans.get(key);
+        if (bySeq != null) {
+            bySeq.headMap(seq, true).clear();
+            if (bySeq.isEmpty()) {
+                loans.remove(key);
+            }
+        }
+    }
+
+    /** Net change of the entries after {@code appliedSeq}, i.e. those the database does not reflect yet. */
+    private static int unappliedSum(NavigableMap<Long, Integer> bySeq, long appliedSeq) {
+        if (bySeq == null) {
+            return 0;
+        }
+        int sum = 0;
+        for (int delta : bySeq.tailMap(appliedSeq, false).values()) {
+            sum += delta;
+        }
+        return sum;
+    }
+
+    private static int stripe(Long id) {
+        return Math.floorMod(id.hashCode(), LOCK_STRIPES);
+    }
+
+    private static ReentrantLock[] stripes() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private record LoanKey(long memberId, long bookId) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.library.journal;
+
+import java.time.LocalDate;
+
+/**
+ * One borrow or return recorded in the {@link JournalFile}, numbered from 1 without gaps.
+ */
+record JournalEntry(long seq, Type type, long memberId, long bookId, LocalDate date) {
+
+    enum Type {
+        BORROW, RETURN
+    }
+
+    /** Change to the member's loan count, and to the number of the book's copies out on loan. */
+    int loanDelta() {
+        return type == Type.BORROW ? 1 : -1;
+    }
+}
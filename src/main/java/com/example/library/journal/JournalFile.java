@@ -0,0 +1,128 @@
+package com.example.library.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped ring of fixed-size journal slots. The entry numbered {@code seq} always lives in
+ * slot {@code (seq - 1) % capacity}, so the file needs no write position of its own: reading
+ * resumes from a sequence number, and an entry whose slot holds anything else (an older entry,
+ * zeros or a write torn by a crash) has never been written completely.
+ * <p>
+ * Writes land in the page cache; they are durable once {@link #force()} has returned.
+ */
+final class JournalFile implements Closeable {
+
+    private static final int MAGIC = 0x424A4E4C;
+    private static final int FORMAT = 1;
+    /** Magic, format and capacity, padded to 16 bytes. */
+    private static final int HEADER_SIZE = 16;
+    /** Sequence number, member id, book id, epoch day, type and a CRC-32C of the preceding 32 bytes. */
+    static final int ENTRY_SIZE = 36;
+    private static final int CHECKSUMMED_SIZE = 32;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private JournalFile(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens the journal at the given path, creating it with room for {@code capacity} entries if it
+     * does not exist. An existing journal keeps the capacity it was created with.
+     */
+    static JournalFile open(Path path, int capacity) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (!created) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+                    throw new IOException(path + " is not a borrow journal");
+                }
+                capacity = header.getInt(8);
+            }
+            if (capacity <= 0 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE) {
+                throw new IOException("Unsupported journal capacity " + capacity);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+            if (created) {
+                buffer.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, capacity);
+                buffer.force();
+            }
+            return new JournalFile(channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void write(JournalEntry entry) {
+        int offset = offset(entry.seq());
+        buffer.putLong(offset, entry.seq())
+                .putLong(offset + 8, entry.memberId())
+                .putLong(offset + 16, entry.bookId())
+                .putInt(offset + 24, (int) entry.date().toEpochDay())
+                .putInt(offset + 28, entry.type().ordinal())
+                .putInt(offset + CHECKSUMMED_SIZE, checksum(offset));
+    }
+
+    /**
+     * @return the entry with the given sequence number, or null if its slot does not hold it intact
+     */
+    JournalEntry read(long seq) {
+        int offset = offset(seq);
+        if (buffer.getLong(offset) != seq || buffer.getInt(offset + CHECKSUMMED_SIZE) != checksum(offset)) {
+            return null;
+        }
+        int type = buffer.getInt(offset + 28);
+        if (type < 0 || type >= JournalEntry.Type.values().length) {
+            return null;
+        }
+        return new JournalEntry(seq, JournalEntry.Type.values()[type], buffer.getLong(offset + 8),
+                buffer.getLong(offset + 16), LocalDate.ofEpochDay(buffer.getInt(offset + 24)));
+    }
+
+    /** Writes every entry written so far through to the storage device. */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int offset(long seq) {
+        return HEADER_SIZE + (int) ((seq - 1) % capacity) * ENTRY_SIZE;
+    }
+
+    private int checksum(int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, CHECKSUMMED_SIZE));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.library.metrics;
+
+import com.example.library.support.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Domain counters for the borrow workflow. Completed borrows and returns are counted once their
+ * transaction commits; rejections are counted when they happen. Also gauges the change feed: its
+ * last offset, and how far behind it each named consumer last read.
+ */
+@Component
+public class LibraryMetrics {
+
+    /** Consumer names come from requests, so only this many get a lag gauge. */
+    private static final int MAX_CHANGE_CONSUMERS = 100;
+
+    private final Counter borrows;
+    private final Counter returns;
+    private final Counter memberLimitRejections;
+    private final Counter outOfStockRejections;
+    private final Counter overdueLoans;
+    private final Counter holdsPlaced;
+    private final Counter holdsFulfilled;
+    private final MeterRegistry registry;
+    private final AtomicLong changeFeedHead = new AtomicLong();
+    private final Map<String, AtomicLong> changeConsumers = new ConcurrentHashMap<>();
+
+    public LibraryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        borrows = Counter.builder("library.borrows")
+                .description("Books borrowed")
+                .register(registry);
+        returns = Counter.builder("library.returns")
+                .description("Books returned")
+                .register(registry);
+        memberLimitRejections = Counter.builder("library.borrow.rejections")
+                .description("Borrow attempts rejected")
+                .tag("reason", "member_limit")
+                .register(registry);
+        outOfStockRejections = Counter.builder("library.borrow.rejections")
+                .description("Borrow attempts rejected")
+                .tag("reason", "out_of_stock")
+                .register(registry);
+        overdueLoans = Counter.builder("library.loans.overdue")
+                .description("Loans found overdue by the overdue scanner")
+                .register(registry);
+        holdsPlaced = Counter.builder("library.holds.placed")
+                .description("Holds placed on books with no copies left")
+                .register(registry);
+        holdsFulfilled = Counter.builder("library.holds.fulfilled")
+                .description("Returned or restocked copies lent to the member at the head of a hold queue")
+                .register(registry);
+        Gauge.builder("library.changes.head", changeFeedHead, AtomicLong::get)
+                .description("Offset of the last change in the change feed")
+                .register(registry);
+    }
+
+    public void borrowed() {
+        AfterCommit.run(borrows::increment);
+    }
+
+    public void returned() {
+        AfterCommit.run(returns::increment);
+    }
+
+    public void memberLimitReached() {
+        memberLimitRejections.increment();
+    }
+
+    public void outOfStock() {
+        outOfStockRejections.increment();
+    }
+
+    public void overdueFound(int loans) {
+        overdueLoans.increment(loans);
+    }
+
+    public void holdPlaced() {
+        AfterCommit.run(holdsPlaced::increment);
+    }
+
+    public void holdFulfilled() {
+        AfterCommit.run(holdsFulfilled::increment);
+    }
+
+    public void changesSequenced(long lastSeq) {
+        changeFeedHead.accumulateAndGet(lastSeq, Math::max);
+    }
+
+    /** Records that the consumer has read the change feed up to {@code offset}. */
+    public void changesConsumed(String consumer, long offset) {
+        AtomicLong consumed = changeConsumers.get(consumer);
+        if (consumed == null) {
+            if (changeConsumers.size() >= MAX_CHANGE_CONSUMERS) {
+                return;
+            }
+            consumed = changeConsumers.computeIfAbsent(consumer, name -> {
+                AtomicLong created = new AtomicLong();
+                Gauge.builder("library.changes.consumer.lag", created,
+                                read -> Math.max(0, changeFeedHead.get() - read.get()))
+                        .description("Changes in the feed after the consumer's last read")
+                        .tag("consumer", name)
+                        .register(registry);
+                return created;
+            });
+        }
+        consumed.set(offset);
+    }
+}
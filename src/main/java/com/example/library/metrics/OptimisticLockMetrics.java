@@ -0,0 +1,89 @@
+package com.example.library.metrics;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.support.RetryOnConflict;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts optimistic locking conflicts of {@link RetryOnConflict} methods, tagged with the entity
+ * type only, so the number of series stays fixed. Which row or title was contended goes to the
+ * log instead. Every failed attempt counts as a conflict; a call that still fails after its last
+ * attempt also counts as exhausted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OptimisticLockMetrics implements RetryListener {
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                                                 Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            String entity = entity(callback);
+            log.info("Optimistic locking conflict on {} {}, attempt {}", entity, subject(callback),
+                    context.getRetryCount());
+            counter("library.optimistic.conflicts", "Optimistic locking conflicts", entity).increment();
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback,
+                                               Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            String entity = entity(callback);
+            log.warn("{} {} still conflicting after {} attempts", entity, subject(callback), context.getRetryCount());
+            counter("library.optimistic.retries.exhausted", "Updates still conflicting after their last attempt",
+                    entity).increment();
+        }
+    }
+
+    private Counter counter(String name, String description, String entity) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("entity", entity)
+                .register(registry);
+    }
+
+    private static String entity(RetryCallback<?, ?> callback) {
+        if (callback instanceof MethodInvocationRetryCallback<?, ?> retried) {
+            RetryOnConflict retryOnConflict = AnnotatedElementUtils.findMergedAnnotation(
+                    retried.getInvocation().getMethod(), RetryOnConflict.class);
+            if (retryOnConflict != null) {
+                return retryOnConflict.value().getSimpleName();
+            }
+        }
+        return NONE;
+    }
+
+    /** The id the retried method was called with, or the title of the book it was given. */
+    private static Object subject(RetryCallback<?, ?> callback) {
+        if (callback instanceof MethodInvocationRetryCallback<?, ?> retried) {
+            MethodInvocation invocation = retried.getInvocation();
+            if (invocation.getArguments().length > 0) {
+                Object subject = invocation.getArguments()[0];
+                if (subject instanceof Long) {
+                    return subject;
+                }
+                if (subject instanceof BookDTO book && book.getTitle() != null) {
+                    return "'" + book.getTitle() + "'";
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.library.overdue;
+
+import com.example.library.dto.OverdueLoanDTO;
+
+import java.util.List;
+
+/**
+ * Published by the {@link OverdueScanner} for each chunk of loans that have become overdue since
+ * its previous run, in due date and id order. Listeners (reminders, exports) run in the scanner's
+ * thread; a chunk may be published again if the scanner fails before recording its progress.
+ */
+public record OverdueLoansFound(List<OverdueLoanDTO> loans) {
+}
@@ -0,0 +1,78 @@
+package com.example.library.overdue;
+
+import com.example.library.dto.OverdueLoanDTO;
+import com.example.library.metrics.LibraryMetrics;
+import com.example.library.repository.BorrowRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reports loans as they become overdue. The last loan reported is kept in {@code overdue_scan}
+ * as a watermark in (due date, id) order, and each run reads only the open loans past it, in
+ * chunks, through the partial index on open loans' due dates. New loans are always due in the
+ * future, so none can appear behind the watermark.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OverdueScanner {
+
+    private final BorrowRepository borrowRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibraryMetrics libraryMetrics;
+
+    // A lock rather than synchronized: the scan blocks on JDBC while holding it.
+    private final ReentrantLock scanLock = new ReentrantLock();
+
+    @Value("${borrow.overdue.scan.chunk.size}")
+    private int chunkSize;
+
+    /**
+     * Publishes an {@link OverdueLoansFound} for each chunk of open loans that fell due before
+     * today since the previous run, moving the watermark past each chunk once it is published.
+     */
+    @Scheduled(fixedDelayString = "${borrow.overdue.scan.interval}")
+    public void scan() {
+        scanLock.lock();
+        try {
+            LocalDate today = LocalDate.now();
+            Watermark watermark = jdbcTemplate.queryForObject("SELECT due_date, loan_id FROM overdue_scan WHERE id = 1",
+                    (rs, row) -> new Watermark(rs.getObject(1, LocalDate.class), rs.getLong(2)));
+            int found = 0;
+            List<OverdueLoanDTO> chunk;
+            do {
+                chunk = borrowRepository.findOverdue(today, watermark.dueDate(), watermark.loanId(),
+                        Limit.of(chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                eventPublisher.publishEvent(new OverdueLoansFound(chunk));
+                libraryMetrics.overdueFound(chunk.size());
+                OverdueLoanDTO last = chunk.get(chunk.size() - 1);
+                watermark = new Watermark(last.getDueDate(), last.getLoanId());
+                jdbcTemplate.update("UPDATE overdue_scan SET due_date = ?, loan_id = ? WHERE id = 1",
+                        watermark.dueDate(), watermark.loanId());
+                found += chunk.size();
+            } while (chunk.size() == chunkSize);
+            if (found > 0) {
+                log.info("Found {} loans that became overdue since the previous scan", found);
+            }
+        } finally {
+            scanLock.unlock();
+        }
+    }
+
+    private record Watermark(LocalDate dueDate, long loanId) {
+    }
+}
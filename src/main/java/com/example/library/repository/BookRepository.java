@@ -1,11 +1,113 @@
 package com.example.library.repository;
 
 import com.example.library.entity.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
     
     Optional<Book> findByTitleAndAuthor(String title, String author);
+
+    @Query("SELECT b.title FROM Book b WHERE b.id = :id")
+    Optional<String> findTitleById(@Param("id") Long id);
+
+    List<BookSummary> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    Optional<BookSummary> findSummaryById(Long id);
+
+    List<BookSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    @Query("SELECT b.version FROM Book b WHERE b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /** Book rows written by committed transactions, as counted by the triggers in V12 and V15; reads 16 rows. */
+    @Query(value = "SELECT COALESCE(SUM(changes), 0) FROM book_change", nativeQuery = true)
+    long countChanges();
+
+    /**
+     * Books whose title and author match every token of {@code tsQuery}, best
+     * matches first. Only the first {@code candidates} matches by id are ranked, which bounds the
+     * cost of very common tokens and keeps the ranked set the same from one page to the next; ties
+     * are broken by id. The space-separated {@code words}, the completed tokens, are first looked up
+     * in {@code book_word}, once per statement: if one of them is not a known word nothing can
+     * match, and the tsvector index is not scanned at all.
+     *
+     * @param tsQuery tokens in {@code to_tsquery} syntax, e.g. {@code dune & herb:*}
+     * @param words   the tokens of {@code tsQuery} matched as whole words, e.g. {@code dune}
+     */
+    @Query(value = "SELECT m.* FROM (SELECT b.* FROM book b "
+            + "WHERE b.search_vector @@ to_tsquery('simple', :tsQuery) "
+            + "AND NOT EXISTS (SELECT 1 FROM unnest(string_to_array(:words, ' ')) AS t(word), "
+            + "unnest(to_tsvector('simple', t.word)) AS l "
+            + "WHERE NOT EXISTS (SELECT 1 FROM book_word w WHERE w.word = l.lexeme)) "
+            + "ORDER BY b.id LIMIT :candidates) m "
+            + "ORDER BY ts_rank(m.search_vector, to_tsquery('simple', :tsQuery)) DESC, m.id "
+            + "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Book> searchByTokens(@Param("tsQuery") String tsQuery, @Param("words") String words,
+                              @Param("candidates") int candidates, @Param("limit") int limit,
+                              @Param("offset") long offset);
+
+    /**
+     * The indexed word closest to each of the space-separated {@code tokens}, in the same order,
+     * used to correct typos in one statement: the token itself when it is a known word, otherwise
+     * the most similar word found through the trigram index, or the token unchanged if none is.
+     */
+    @Query(value = "SELECT COALESCE("
+            + "(SELECT w.word FROM book_word w WHERE w.word = t.token), "
+            + "(SELECT w.word FROM book_word w WHERE w.word % t.token "
+            + "ORDER BY similarity(w.word, t.token) DESC, w.word LIMIT 1), t.token) "
+            + "FROM unnest(string_to_array(:tokens, ' ')) WITH ORDINALITY AS t(token, n) ORDER BY t.n",
+            nativeQuery = true)
+    List<String> findClosestWords(@Param("tokens") String tokens);
+
+    /**
+     * Sets how similar a word must be for {@link #findClosestWords} to return it, and plans the
+     * corrected search for its own words, for the rest of the current transaction only. A generic
+     * plan cannot see the words or the limit, and scans many times more rows for broad corrections.
+     */
+    @Query(value = "SELECT set_config('pg_trgm.similarity_threshold', :threshold, true) "
+            + "|| set_config('plan_cache_mode', 'force_custom_plan', true)", nativeQuery = true)
+    String prepareFuzzySearch(@Param("threshold") String threshold);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAll();
+
+    /**
+     * Takes one copy off the shelf in a single conditional statement.
+     *
+     * @return 1 if a copy was taken, 0 if the book does not exist or has no copies left
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.amount = b.amount - 1, b.version = b.version + 1 "
+            + "WHERE b.id = :id AND b.amount > 0")
+    int decrementAmount(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.amount = b.amount + 1, b.version = b.version + 1 WHERE b.id = :id")
+    int incrementAmount(@Param("id") Long id);
+
+    /** Takes copies the caller has already seen on the shelf under {@link #lockAmount}. */
+    @Modifying
+    @Query("UPDATE Book b SET b.amount = b.amount - :copies, b.version = b.version + 1 "
+            + "WHERE b.id = :id AND b.amount >= :copies")
+    int takeCopies(@Param("id") Long id, @Param("copies") int copies);
+
+    /** The copies on the shelf, with the book row locked until the transaction ends. */
+    @Query(value = "SELECT amount FROM book WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockAmount(@Param("id") Long id);
 }
@@ -0,0 +1,7 @@
+package com.example.library.repository;
+
+/**
+ * The columns of a book that its DTO shows, read without loading the entity.
+ */
+public record BookSummary(Long id, String title, String author, int amount, long version) {
+}
@@ -1,14 +1,30 @@
 package com.example.library.repository;
 
+import com.example.library.dto.LoanHistoryDTO;
+import com.example.library.dto.OverdueLoanDTO;
 import com.example.library.entity.Borrow;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 public interface BorrowRepository extends JpaRepository<Borrow, Long> {
 
     List<Borrow> findByMemberIdAndReturnDateIsNull(Long memberId);
 
+    /**
+     * Titles of the open loans of the member(s) with the given name, compared case-insensitively,
+     * read in one statement without loading the loan or book entities.
+     */
+    @Query("SELECT b.book.title FROM Borrow b " +
+            "WHERE UPPER(b.member.name) = UPPER(:name) AND b.returnDate IS NULL ORDER BY b.id")
+    List<String> findOpenLoanTitlesByMemberName(@Param("name") String name);
+
     boolean existsByMemberIdAndReturnDateIsNull(Long memberId);
 
     boolean existsByBookIdAndReturnDateIsNull(Long bookId);
@@ -18,4 +34,67 @@ public interface BorrowRepository extends JpaRepository<Borrow, Long> {
 
     @Query("SELECT b.book.title, COUNT(b) FROM Borrow b WHERE b.returnDate IS NULL GROUP BY b.book.title")
     List<Object[]> findBorrowedBookTitleWithCount();
-}
\ No newline at end of file
+
+    /**
+     * @return rows of book id, title and number of open loans, for books with at least one open loan
+     */
+    @Query("SELECT b.book.id, b.book.title, COUNT(b) FROM Borrow b WHERE b.returnDate IS NULL GROUP BY b.book.id, b.book.title")
+    List<Object[]> countActiveLoansByBook();
+
+    /**
+     * Open loans due before {@code today}, in due date and id order, starting after the loan due
+     * on {@code afterDueDate} with id {@code afterId}. Served by the partial index on open loans.
+     */
+    @Query("SELECT new com.example.library.dto.OverdueLoanDTO(b.id, b.member.id, b.member.name, b.book.id, " +
+            "b.book.title, b.borrowDate, b.dueDate) FROM Borrow b " +
+            "WHERE b.returnDate IS NULL AND b.dueDate < :today AND (b.dueDate, b.id) > (:afterDueDate, :afterId) " +
+            "ORDER BY b.dueDate, b.id")
+    List<OverdueLoanDTO> findOverdue(@Param("today") LocalDate today,
+                                     @Param("afterDueDate") LocalDate afterDueDate,
+                                     @Param("afterId") Long afterId,
+                                     Limit limit);
+
+    /**
+     * The member's loans borrowed within the given days, open or returned, in id order after
+     * {@code afterId}. The date range limits the read to the archive partitions of those years.
+     */
+    @Query("SELECT new com.example.library.dto.LoanHistoryDTO(b.id, b.book.id, b.book.title, b.borrowDate, " +
+            "b.dueDate, b.returnDate) FROM Borrow b " +
+            "WHERE b.member.id = :memberId AND b.borrowDate BETWEEN :from AND :to AND b.id > :afterId ORDER BY b.id")
+    List<LoanHistoryDTO> findHistory(@Param("memberId") Long memberId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("afterId") Long afterId,
+                                     Limit limit);
+
+    @Query("SELECT b.dueDate FROM Borrow b WHERE b.id = :id")
+    Optional<LocalDate> findDueDateById(@Param("id") Long id);
+
+    /**
+     * Closes the member's oldest open loan of the given book, touching only that row.
+     * The outer {@code returnDate IS NULL} makes a concurrent second return of the same loan a no-op.
+     *
+     * @return 1 if a loan was closed, 0 if the member has no open loan of the book
+     */
+    @Modifying
+    @Query("UPDATE Borrow b SET b.returnDate = :returnDate " +
+            "WHERE b.returnDate IS NULL AND b.id = (SELECT MIN(o.id) FROM Borrow o " +
+            "WHERE o.member.id = :memberId AND o.book.id = :bookId AND o.returnDate IS NULL)")
+    int markReturned(@Param("memberId") Long memberId,
+                     @Param("bookId") Long bookId,
+                     @Param("returnDate") LocalDate returnDate);
+
+    /**
+     * Removes every loan of the member, in one statement; the member has none open.
+     */
+    @Modifying
+    @Query("DELETE FROM Borrow b WHERE b.member.id = :memberId")
+    int deleteByMemberId(@Param("memberId") Long memberId);
+
+    /**
+     * Removes every loan of the book, in one statement; the book has none open.
+     */
+    @Modifying
+    @Query("DELETE FROM Borrow b WHERE b.book.id = :bookId")
+    int deleteByBookId(@Param("bookId") Long bookId);
+}
@@ -1,14 +1,51 @@
 package com.example.library.repository;
 
-import com.example.library.entity.Book;
 import com.example.library.entity.Member;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
 
     Optional<Member> findByName(String name);
     Optional<Member> findByNameIgnoreCase(String name);
-    boolean existsByBorrows_Book(Book book);
+    boolean existsByNameIgnoreCase(String name);
+
+    List<MemberSummary> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    Optional<MemberSummary> findSummaryById(Long id);
+
+    @Query("SELECT m.version FROM Member m WHERE m.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM Member m ORDER BY m.id")
+    Stream<Member> streamAll();
+
+    /**
+     * Counts a new loan against the member if they are still below the limit.
+     *
+     * @return 1 if the loan was counted, 0 if the member does not exist or is already at the limit
+     */
+    @Modifying
+    @Query("UPDATE Member m SET m.activeLoans = m.activeLoans + 1, m.version = m.version + 1 "
+            + "WHERE m.id = :id AND m.activeLoans < :limit")
+    int incrementActiveLoans(@Param("id") Long id, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE Member m SET m.activeLoans = m.activeLoans - 1, m.version = m.version + 1 "
+            + "WHERE m.id = :id AND m.activeLoans > 0")
+    int decrementActiveLoans(@Param("id") Long id);
 }
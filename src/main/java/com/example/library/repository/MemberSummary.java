@@ -0,0 +1,9 @@
+package com.example.library.repository;
+
+import java.time.LocalDate;
+
+/**
+ * The columns of a member that its DTO shows, read without loading the entity.
+ */
+public record MemberSummary(Long id, String name, LocalDate membershipDate, long version) {
+}
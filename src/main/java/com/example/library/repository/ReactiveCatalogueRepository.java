@@ -0,0 +1,65 @@
+package com.example.library.repository;
+
+import com.example.library.entity.Book;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-only catalogue queries over R2DBC. Rows are read as demand arrives, so a slow client
+ * holds back the query instead of the result piling up in memory.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReactiveCatalogueRepository {
+
+    private static final int FETCH_SIZE = 500;
+
+    private final DatabaseClient databaseClient;
+
+    public Flux<Book> findByIdGreaterThan(long afterId, int limit) {
+        return databaseClient.sql("SELECT id, title, author, amount, version FROM book WHERE id > :after ORDER BY id LIMIT :limit")
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map(ReactiveCatalogueRepository::toBook)
+                .all();
+    }
+
+    public Flux<Book> streamFrom(long afterId) {
+        return databaseClient.sql("SELECT id, title, author, amount, version FROM book WHERE id > :after ORDER BY id")
+                .bind("after", afterId)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveCatalogueRepository::toBook)
+                .all();
+    }
+
+    public Mono<Book> findById(long id) {
+        return databaseClient.sql("SELECT id, title, author, amount, version FROM book WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveCatalogueRepository::toBook)
+                .one();
+    }
+
+    /**
+     * @return rows of title and number of open loans, in title order
+     */
+    public Flux<Object[]> findBorrowedBookTitleWithCount() {
+        return databaseClient.sql("SELECT bk.title, COUNT(*) FROM borrow b JOIN book bk ON bk.id = b.book_id "
+                        + "WHERE b.return_date IS NULL GROUP BY bk.title ORDER BY bk.title")
+                .map(row -> new Object[]{row.get(0, String.class), row.get(1, Long.class)})
+                .all();
+    }
+
+    private static Book toBook(Readable row) {
+        Book book = new Book();
+        book.setId(row.get("id", Long.class));
+        book.setTitle(row.get("title", String.class));
+        book.setAuthor(row.get("author", String.class));
+        book.setAmount(row.get("amount", Integer.class));
+        book.setVersion(row.get("version", Long.class));
+        return book;
+    }
+}
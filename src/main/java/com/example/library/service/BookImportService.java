@@ -0,0 +1,11 @@
+package com.example.library.service;
+
+import com.example.library.dto.BookImportResultDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface BookImportService {
+    BookImportResultDTO importCsv(InputStream input) throws IOException;
+    BookImportResultDTO importNdjson(InputStream input) throws IOException;
+}
@@ -2,12 +2,21 @@ package com.example.library.service;
 
 import com.example.library.dto.BookDTO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface BookService {
     BookDTO addBook(BookDTO bookDTO);
     BookDTO updateBook(Long id, BookDTO bookDTO);
     void deleteBook(Long id);
-    List<BookDTO> listBooks();
+    List<BookDTO> listBooks(Long afterId, int size);
+    void streamBooks(Consumer<BookDTO> consumer);
+    List<BookDTO> searchBooks(String query, int page, int size);
     BookDTO getBookById(Long id);
+    long getBookVersion(Long id);
+    long getCatalogueVersion();
+    long getInMemoryStockChanges();
+    Map<Long, Integer> getAvailableCopies(Collection<Long> ids);
 }
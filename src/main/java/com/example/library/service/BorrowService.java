@@ -1,13 +1,24 @@
 package com.example.library.service;
 
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
 import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.dto.HoldDTO;
+import com.example.library.dto.OverdueLoanDTO;
 
 import java.util.List;
 
 public interface BorrowService {
     void borrowBook(Long memberId, Long bookId);
     void returnBook(Long memberId, Long bookId);
+    List<BorrowResultDTO> borrowBooks(List<BorrowRequestDTO> requests);
+    List<BorrowResultDTO> returnBooks(List<BorrowRequestDTO> requests);
     List<String> getBorrowedBooksByMemberName(String name);
     List<String> getDistinctBorrowedBooks();
     List<BorrowedBookStatDTO> getBorrowedBookStats();
-}
\ No newline at end of file
+    List<OverdueLoanDTO> getOverdueLoans(Long afterId, int size);
+    HoldDTO placeHold(Long memberId, Long bookId);
+    void cancelHold(Long memberId, Long bookId);
+    List<HoldDTO> getHolds(Long bookId, Long afterId, int size);
+    int fulfilHolds(Long bookId);
+}
@@ -0,0 +1,11 @@
+package com.example.library.service;
+
+import com.example.library.dto.ChangeDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ChangeService {
+    CompletableFuture<List<ChangeDTO>> getChanges(long since, int size, long waitMillis, String consumer);
+    long getHead();
+}
@@ -1,13 +1,19 @@
 package com.example.library.service;
 
+import com.example.library.dto.LoanHistoryDTO;
 import com.example.library.dto.MemberDTO;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface MemberService {
-    List<MemberDTO> getAllMembers();
+    List<MemberDTO> getAllMembers(Long afterId, int size);
+    void streamMembers(Consumer<MemberDTO> consumer);
     MemberDTO getMemberById(Long id);
+    long getMemberVersion(Long id);
     MemberDTO createMember(MemberDTO memberDTO);
     MemberDTO updateMember(Long id, MemberDTO memberDTO);
     void deleteMember(Long id);
+    List<LoanHistoryDTO> getBorrowHistory(Long memberId, LocalDate from, LocalDate to, Long afterId, int size);
 }
@@ -0,0 +1,13 @@
+package com.example.library.service;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BorrowedBookStatDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCatalogueService {
+    Flux<BookDTO> listBooks(Long afterId, int size);
+    Flux<BookDTO> streamBooks(Long afterId);
+    Mono<BookDTO> getBookById(Long id);
+    Flux<BorrowedBookStatDTO> getBorrowedBookStats();
+}
@@ -0,0 +1,276 @@
+package com.example.library.service.impl;
+
+import com.example.library.availability.BookStockChanged;
+import com.example.library.changes.Change;
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.changes.ChangeType;
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BookImportResultDTO;
+import com.example.library.holds.HoldQueue;
+import com.example.library.service.BookImportService;
+import com.example.library.service.BorrowService;
+import com.example.library.validation.BookDTOValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a catalogue upload line by line and merges it into {@code book} one chunk at a time,
+ * so heap use depends on the chunk size rather than on the size of the upload.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Set-based upsert of a whole chunk: new (title, author) pairs are inserted, existing ones get
+     * the imported copies added to their amount. {@code xmax} is zero only on rows the statement
+     * inserted.
+     */
+    private static final String UPSERT_SQL =
+            "INSERT INTO book (title, author, amount) "
+                    + "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::int[]) "
+                    + "ON CONFLICT (title, author) DO UPDATE "
+                    + "SET amount = book.amount + EXCLUDED.amount, version = book.version + 1 "
+                    + "RETURNING id, title, author, amount, version, xmax = 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookDTOValidator bookDTOValidator;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final ChangeOutbox changeOutbox;
+    private final BorrowService borrowService;
+    private final HoldQueue holdQueue;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${book.import.chunk.size}")
+    private int chunkSize;
+
+    @Override
+    public BookImportResultDTO importCsv(InputStream input) throws IOException {
+        return importLines(input, this::parseCsvLine);
+    }
+
+    @Override
+    public BookImportResultDTO importNdjson(InputStream input) throws IOException {
+        return importLines(input, line -> {
+            try {
+                return objectMapper.readValue(line, BookDTO.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+            }
+        });
+    }
+
+    private BookImportResultDTO importLines(InputStream input, Function<String, BookDTO> parser) throws IOException {
+        BookImportResultDTO result = new BookImportResultDTO();
+        // Keyed by (title, author) so repeated rows inside one chunk are merged before the upsert,
+        // which cannot touch the same row twice in one statement.
+        Map<List<String>, Integer> chunk = new LinkedHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && isCsvHeader(line))) {
+                    continue;
+                }
+                result.setProcessed(result.getProcessed() + 1);
+                try {
+                    BookDTO book = parser.apply(line);
+                    validate(book);
+                    chunk.merge(List.of(book.getTitle().trim(), book.getAuthor().trim()), book.getAmount(), Integer::sum);
+                    result.setImported(result.getImported() + 1);
+                } catch (IllegalArgumentException e) {
+                    reject(result, lineNumber, e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    flush(chunk, result);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            flush(chunk, result);
+        }
+        log.info("Book import finished: {} rows processed, {} imported, {} rejected in {} chunks",
+                result.getProcessed(), result.getImported(), result.getRejected(), result.getChunks());
+        return result;
+    }
+
+    private void flush(Map<List<String>, Integer> chunk, BookImportResultDTO result) {
+        List<Change> changes = transactionTemplate.execute(status -> {
+            List<Change> upserted = upsert(chunk);
+            serveHolds(upserted);
+            changeOutbox.recordAll(upserted);
+            // Merged rows changed their amount; the evictions run once the chunk commits.
+            Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+            if (books != null) {
+                upserted.forEach(change -> books.evict(change.bookId()));
+            }
+            upserted.forEach(change -> eventPublisher.publishEvent(new BookStockChanged(change.bookId())));
+            return upserted;
+        });
+        chunk.clear();
+        result.setChunks(result.getChunks() + 1);
+        log.info("Book import chunk {} committed ({} titles), {} rows imported so far",
+                result.getChunks(), changes != null ? changes.size() : 0, result.getImported());
+    }
+
+    /**
+     * Lends the copies a merged row added to the book's holds first, as a restock through the book
+     * service does, and brings the row's change up to date with the copies lent. Only the books
+     * with holds queued, looked up in one statement for the whole chunk, are locked and served.
+     */
+    private void serveHolds(List<Change> upserted) {
+        List<Long> restocked = upserted.stream()
+                .filter(change -> change.type() == ChangeType.BOOK_UPDATED)
+                .map(Change::bookId)
+                .toList();
+        Set<Long> held = new HashSet<>(holdQueue.heldBooks(restocked));
+        for (Change change : upserted) {
+            if (!held.contains(change.bookId())) {
+                continue;
+            }
+            int lent = borrowService.fulfilHolds(change.bookId());
+            if (lent > 0) {
+                // fulfilHolds took the lent copies in one update, which also moved the version.
+                BookDTO book = (BookDTO) change.payload();
+                book.setAmount(book.getAmount() - lent);
+                book.setVersion(book.getVersion() + 1);
+            }
+        }
+    }
+
+    private List<Change> upsert(Map<List<String>, Integer> chunk) {
+        String[] titles = new String[chunk.size()];
+        String[] authors = new String[chunk.size()];
+        Integer[] amounts = new Integer[chunk.size()];
+        int i = 0;
+        for (Map.Entry<List<String>, Integer> entry : chunk.entrySet()) {
+            titles[i] = entry.getKey().get(0);
+            authors[i] = entry.getKey().get(1);
+            amounts[i] = entry.getValue();
+            i++;
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", titles));
+            statement.setArray(2, connection.createArrayOf("varchar", authors));
+            statement.setArray(3, connection.createArrayOf("integer", amounts));
+            return statement;
+        }, (rs, rowNum) -> {
+            BookDTO book = new BookDTO();
+            book.setId(rs.getLong(1));
+            book.setTitle(rs.getString(2));
+            book.setAuthor(rs.getString(3));
+            book.setAmount(rs.getInt(4));
+            book.setVersion(rs.getLong(5));
+            return Change.book(rs.getBoolean(6) ? ChangeType.BOOK_CREATED : ChangeType.BOOK_UPDATED, book);
+        });
+    }
+
+    /**
+     * Applies the same rules as {@code POST /api/books}: the bean constraints on {@link BookDTO}
+     * and then {@link BookDTOValidator}.
+     */
+    private void validate(BookDTO book) {
+        Set<ConstraintViolation<BookDTO>> violations = validator.validate(book);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        bookDTOValidator.validate(book);
+    }
+
+    private void reject(BookImportResultDTO result, long lineNumber, String message) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add("Line " + lineNumber + ": " + message);
+        }
+    }
+
+    private boolean isCsvHeader(String line) {
+        return line.replace("\"", "").replace(" ", "").equalsIgnoreCase("title,author,amount");
+    }
+
+    /**
+     * Parses {@code title,author,amount}. Fields may be wrapped in double quotes, with {@code ""}
+     * standing for a quote inside a quoted field; quoted fields cannot span lines.
+     */
+    private BookDTO parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("Expected 3 columns (title,author,amount) but found " + fields.size());
+        }
+
+        BookDTO book = new BookDTO();
+        book.setTitle(fields.get(0));
+        book.setAuthor(fields.get(1));
+        try {
+            book.setAmount(Integer.parseInt(fields.get(2)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Amount must be a whole number");
+        }
+        return book;
+    }
+}
@@ -1,36 +1,92 @@
 package com.example.library.service.impl;
 
+import com.example.library.availability.BookStockChanged;
+import com.example.library.changes.Change;
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.changes.ChangeType;
+import com.example.library.config.CacheConfig;
 import com.example.library.dto.BookDTO;
 import com.example.library.entity.Book;
 import com.example.library.exception.NotFoundException;
 import com.example.library.exception.DeleteConstraintException;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
 import com.example.library.repository.BookRepository;
+import com.example.library.repository.BookSummary;
 import com.example.library.repository.BorrowRepository;
 import com.example.library.repository.MemberRepository;
 import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
+import com.example.library.support.RetryOnConflict;
 import com.example.library.validation.BookDTOValidator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BookServiceImpl implements BookService {
 
+    private static final int MIN_SEARCH_LENGTH = 2;
+
     private final BookRepository bookRepository;
     private final BorrowRepository borrowRepository;
     private final BookDTOValidator bookDTOValidator;
+    private final BorrowStatsTracker borrowStatsTracker;
+    private final InventoryEngine inventoryEngine;
+    private final BorrowJournal borrowJournal;
+    private final ChangeOutbox changeOutbox;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BorrowService borrowService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${page.size.limit}")
+    private int maxPageSize;
+
+    @Value("${book.search.fuzzy.threshold}")
+    private String fuzzyThreshold;
+
+    @Value("${book.search.candidates}")
+    private int searchCandidates;
+
+    @Value("${book.search.fuzzy.candidates}")
+    private int fuzzyCandidates;
+
+    BookDTO mapToDTO(Book book) {
+        return mapToDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getAmount(), book.getVersion());
+    }
+
+    BookDTO mapToDTO(BookSummary book) {
+        return mapToDTO(book.id(), book.title(), book.author(), book.amount(), book.version());
+    }
 
-    private BookDTO mapToDTO(Book book) {
+    private BookDTO mapToDTO(Long id, String title, String author, int amount, long version) {
         BookDTO dto = new BookDTO();
-        dto.setId(book.getId());
-        dto.setTitle(book.getTitle());
-        dto.setAuthor(book.getAuthor());
-        dto.setAmount(book.getAmount());
+        dto.setId(id);
+        dto.setTitle(title);
+        dto.setAuthor(author);
+        dto.setAmount(amount + inventoryEngine.available(id) - borrowJournal.unappliedLoans(id));
+        dto.setVersion(version);
         return dto;
     }
 
@@ -43,7 +99,9 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @RetryOnConflict(Book.class)
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#result.id")
     public BookDTO addBook(BookDTO bookDTO) {
         bookDTOValidator.validate(bookDTO);
         Optional<Book> existing = bookRepository.findByTitleAndAuthor(bookDTO.getTitle(), bookDTO.getAuthor());
@@ -51,30 +109,56 @@ public class BookServiceImpl implements BookService {
             Book existingBook = existing.get();
             existingBook.setAmount(existingBook.getAmount() + bookDTO.getAmount());
             Book saved = bookRepository.save(existingBook);
-            return mapToDTO(saved);
+            return recorded(ChangeType.BOOK_UPDATED, saved);
         } else {
             Book bookToSave = mapToEntity(bookDTO);
             Book saved = bookRepository.save(bookToSave);
-            return mapToDTO(saved);
+            return recorded(ChangeType.BOOK_CREATED, saved);
         }
     }
 
+    /**
+     * Writes the book now rather than at commit, so its row is locked and its version current
+     * before the change goes to the outbox. Copies an update adds go to the book's holds first.
+     */
+    private BookDTO recorded(ChangeType type, Book book) {
+        bookRepository.flush();
+        if (type == ChangeType.BOOK_UPDATED && borrowService.fulfilHolds(book.getId()) > 0) {
+            entityManager.refresh(book);
+        }
+        BookDTO dto = mapToDTO(book);
+        changeOutbox.record(Change.book(type, dto));
+        eventPublisher.publishEvent(new BookStockChanged(dto.getId()));
+        return dto;
+    }
+
     @Override
+    @RetryOnConflict(Book.class)
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
     public BookDTO updateBook(Long id, BookDTO bookDTO) {
         bookDTOValidator.validate(bookDTO);
+        // The new amount is the whole stock, so nothing may stay behind in the inventory engine,
+        // and journalled loans must already count against the old one.
+        inventoryEngine.release(id);
+        borrowJournal.closeBookForDelete(id);
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Book with ID " + id + " not found"));
         book.setTitle(bookDTO.getTitle());
         book.setAuthor(bookDTO.getAuthor());
         book.setAmount(bookDTO.getAmount());
         Book updated = bookRepository.save(book);
-        return mapToDTO(updated);
+        borrowStatsTracker.renameBook(id, updated.getTitle());
+        return recorded(ChangeType.BOOK_UPDATED, updated);
     }
 
     @Override
+    @RetryOnConflict(Book.class)
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
     public void deleteBook(Long id) {
+        inventoryEngine.release(id);
+        borrowJournal.closeBookForDelete(id);
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Book with ID " + id + " not found"));
 
@@ -82,23 +166,143 @@ public class BookServiceImpl implements BookService {
         if (isBorrowed) {
             throw new DeleteConstraintException("Book is currently borrowed and cannot be deleted");
         }
+        // The book does not map its loans, so its returned ones are removed here, in one statement.
+        borrowRepository.deleteByBookId(id);
         bookRepository.delete(book);
+        bookRepository.flush();
+        changeOutbox.record(Change.bookDeleted(id));
+        eventPublisher.publishEvent(new BookStockChanged(id));
+        borrowStatsTracker.forgetBook(id);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<BookDTO> listBooks() {
-        return bookRepository.findAll()
+    public List<BookDTO> listBooks(Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long cursor = afterId != null ? afterId : 0L;
+        return bookRepository.findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(Math.min(size, maxPageSize)))
+                .stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBooks(Consumer<BookDTO> consumer) {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            books.forEach(book -> {
+                consumer.accept(mapToDTO(book));
+                // Keep the persistence context empty so heap use does not grow with the table.
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookDTO> searchBooks(String query, int page, int size) {
+        if (query == null || query.strip().length() < MIN_SEARCH_LENGTH) {
+            throw new IllegalArgumentException("Search query must be at least " + MIN_SEARCH_LENGTH + " characters");
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        String text = query.strip().toLowerCase(Locale.ROOT);
+        // Only letters and digits reach to_tsquery, so user input cannot inject query operators.
+        List<String> tokens = Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .toList();
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        int limit = Math.min(size, maxPageSize);
+        long offset = (long) page * limit;
+        if (offset >= searchCandidates) {
+            throw new IllegalArgumentException("Search results are limited to the first " + searchCandidates
+                    + " matches");
+        }
+        String tsQuery = toTsQuery(tokens);
+        String words = completedWords(tokens);
+        List<Book> books = bookRepository.searchByTokens(tsQuery, words, searchCandidates, limit, offset);
+        // A later page may be empty because the matches ran out, not because the words were mistyped.
+        if (!books.isEmpty() || (page > 0 && !bookRepository.searchByTokens(tsQuery, words, 1, 1, 0).isEmpty())) {
+            return books.stream().map(this::mapToDTO).collect(Collectors.toList());
+        }
+
+        // Nothing matches as typed: replace every word by the closest indexed word and try again.
+        bookRepository.prepareFuzzySearch(fuzzyThreshold);
+        // Tokens hold only letters and digits, so a space separates them unambiguously.
+        List<String> corrected = bookRepository.findClosestWords(String.join(" ", tokens));
+        // A correction is a guess, so fewer matches are ranked: broad corrected words, common to
+        // most books, would otherwise cost more than the search as typed.
+        if (corrected.equals(tokens) || offset >= fuzzyCandidates) {
+            return List.of();
+        }
+        return bookRepository.searchByTokens(toTsQuery(corrected), completedWords(corrected), fuzzyCandidates,
+                limit, offset)
                 .stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Completed words must match whole words, so the index can skip through their entries; only
+     * the last word, possibly still being typed, matches as a prefix.
+     */
+    private String toTsQuery(List<String> tokens) {
+        return String.join(" & ", tokens) + ":*";
+    }
+
+    /** The tokens {@link #toTsQuery} matches as whole words, separated by spaces. */
+    private String completedWords(List<String> tokens) {
+        return String.join(" ", tokens.subList(0, tokens.size() - 1));
+    }
+
+    @Override
+    public long getBookVersion(Long id) {
+        return bookRepository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("Book with ID " + id + " not found"));
+    }
+
+    /** Grows with every committed write to any book; read without loading one. */
+    @Override
+    public long getCatalogueVersion() {
+        return bookRepository.countChanges();
+    }
+
+    /**
+     * Grows whenever copies lent or returned in memory, by the inventory engine or the borrow
+     * journal, change an amount without a write to the book. Both counters only grow, so their
+     * sum grows with every change either of them counts.
+     */
+    @Override
+    public long getInMemoryStockChanges() {
+        return inventoryEngine.changes() + borrowJournal.changes();
+    }
+
+    /**
+     * Copies available per book, read past the cache in one query, so they are never older than
+     * the last commit. Ids of books that do not exist are left out.
+     */
     @Override
     @Transactional(readOnly = true)
+    public Map<Long, Integer> getAvailableCopies(Collection<Long> ids) {
+        return bookRepository.findSummariesByIdIn(ids).stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toMap(BookDTO::getId, BookDTO::getAmount));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#id", sync = true)
     public BookDTO getBookById(Long id) {
-        Book book = bookRepository.findById(id)
+        return bookRepository.findSummaryById(id)
+                .map(this::mapToDTO)
                 .orElseThrow(() -> new NotFoundException("Book with ID " + id + " not found"));
-        return mapToDTO(book);
     }
 }
@@ -1,100 +1,473 @@
 package com.example.library.service.impl;
 
+import com.example.library.availability.BookStockChanged;
+import com.example.library.changes.Change;
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
 import com.example.library.dto.BorrowedBookStatDTO;
-import com.example.library.entity.Book;
+import com.example.library.dto.HoldDTO;
+import com.example.library.dto.OverdueLoanDTO;
 import com.example.library.entity.Borrow;
-import com.example.library.entity.Member;
 import com.example.library.exception.NotFoundException;
+import com.example.library.holds.HoldFulfilled;
+import com.example.library.holds.HoldQueue;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
+import com.example.library.metrics.LibraryMetrics;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.BorrowRepository;
 import com.example.library.repository.MemberRepository;
 import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
+import com.example.library.support.AfterCommit;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class BorrowServiceImpl implements BorrowService {
 
+    /** Precedes every due date, as the start of the overdue listing. */
+    private static final LocalDate FIRST_DUE_DATE = LocalDate.of(1, 1, 1);
+
     private final BorrowRepository borrowRepository;
     private final MemberRepository memberRepository;
     private final BookRepository bookRepository;
+    private final CacheManager cacheManager;
+    private final BorrowStatsTracker borrowStatsTracker;
+    private final LibraryMetrics libraryMetrics;
+    private final InventoryEngine inventoryEngine;
+    private final BorrowJournal borrowJournal;
+    private final ChangeOutbox changeOutbox;
+    private final ApplicationEventPublisher eventPublisher;
+    private final HoldQueue holdQueue;
 
     @Value("${member.borrow.limit}")
     private int maxAllowedBooks;
 
+    @Value("${borrow.batch.limit}")
+    private int maxBatchSize;
+
+    @Value("${borrow.loan.days}")
+    private int loanDays;
+
+    @Value("${page.size.limit}")
+    private int maxPageSize;
+
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId")
     public void borrowBook(Long memberId, Long bookId) {
-        Member member = memberRepository.findById(memberId)
-                .orElseThrow(() -> new NotFoundException("Member with ID " + memberId + " not found"));
+        if (borrowJournal.isEnabled()) {
+            journalBorrow(memberId, bookId);
+            borrowJournal.sync();
+        } else {
+            borrowRepository.save(takeCopy(memberId, bookId));
+            changeOutbox.record(Change.borrowed(memberId, bookId));
+        }
+        eventPublisher.publishEvent(new BookStockChanged(bookId));
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId")
+    public void returnBook(Long memberId, Long bookId) {
+        if (borrowJournal.isEnabled()) {
+            journalReturn(memberId, bookId);
+            borrowJournal.sync();
+        } else {
+            returnOne(memberId, bookId);
+        }
+        eventPublisher.publishEvent(new BookStockChanged(bookId));
+    }
 
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new NotFoundException("Book with ID " + bookId + " not found"));
+    @Override
+    @Transactional
+    public List<BorrowResultDTO> borrowBooks(List<BorrowRequestDTO> requests) {
+        if (borrowJournal.isEnabled()) {
+            List<BorrowResultDTO> results = processBatch(requests, this::journalBorrow);
+            borrowJournal.sync();
+            evictBooks(results);
+            return results;
+        }
+        List<Borrow> loans = new ArrayList<>();
+        List<BorrowResultDTO> results = processBatch(requests,
+                (memberId, bookId) -> loans.add(takeCopy(memberId, bookId)));
+        // Persisting after the conditional updates keeps their auto-flushes from re-checking
+        // every pending loan, and lets the inserts go out as JDBC batches at commit.
+        borrowRepository.saveAll(loans);
+        changeOutbox.recordAll(changes(results, Change::borrowed));
+        evictBooks(results);
+        return results;
+    }
 
-        List<Borrow> activeBorrows = borrowRepository.findByMemberIdAndReturnDateIsNull(memberId);
-        if (activeBorrows.size() >= maxAllowedBooks) {
-            throw new IllegalStateException("Member has reached the maximum allowed borrowed books.");
+    @Override
+    @Transactional
+    public List<BorrowResultDTO> returnBooks(List<BorrowRequestDTO> requests) {
+        List<BorrowResultDTO> results;
+        if (borrowJournal.isEnabled()) {
+            results = processBatch(requests, this::journalReturn);
+            borrowJournal.sync();
+        } else {
+            results = processBatch(requests, this::returnOne);
         }
+        evictBooks(results);
+        return results;
+    }
 
-        if (book.getAmount() <= 0) {
-            throw new IllegalStateException("Book is currently unavailable.");
+    /**
+     * Runs every item in the caller's transaction so the whole batch costs one commit.
+     * A rejected item leaves no partial changes behind, so the remaining items are unaffected by it.
+     * Items run in (member, book) order, so batches over the same loans lock their rows in the
+     * same order and cannot deadlock each other; the results are still in request order.
+     */
+    private List<BorrowResultDTO> processBatch(List<BorrowRequestDTO> requests, BiConsumer<Long, Long> operation) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one item");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch must not contain more than " + maxBatchSize + " items");
         }
 
+        BorrowResultDTO[] results = new BorrowResultDTO[requests.size()];
+        List<Integer> order = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            BorrowRequestDTO request = requests.get(i);
+            if (request == null || request.getMemberId() == null || request.getBookId() == null) {
+                results[i] = new BorrowResultDTO(request != null ? request.getMemberId() : null,
+                        request != null ? request.getBookId() : null, false, "Member ID and book ID are required");
+            } else {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparing((Integer i) -> requests.get(i).getMemberId())
+                .thenComparing(i -> requests.get(i).getBookId()));
+        for (int i : order) {
+            BorrowRequestDTO request = requests.get(i);
+            try {
+                operation.accept(request.getMemberId(), request.getBookId());
+                results[i] = new BorrowResultDTO(request.getMemberId(), request.getBookId(), true, null);
+            } catch (NotFoundException | IllegalStateException e) {
+                results[i] = new BorrowResultDTO(request.getMemberId(), request.getBookId(), false, e.getMessage());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /** The changes of the batch items that succeeded, in request order. */
+    private List<Change> changes(List<BorrowResultDTO> results, BiFunction<Long, Long, Change> change) {
+        return results.stream()
+                .filter(BorrowResultDTO::isSuccess)
+                .map(result -> change.apply(result.getMemberId(), result.getBookId()))
+                .toList();
+    }
+
+    /**
+     * Drops the cached copies of every book whose amount the batch changed, and announces the
+     * change. The cache is transaction-aware, so the evictions take effect once the batch commits.
+     */
+    private void evictBooks(List<BorrowResultDTO> results) {
+        List<Long> bookIds = results.stream()
+                .filter(BorrowResultDTO::isSuccess)
+                .map(BorrowResultDTO::getBookId)
+                .distinct()
+                .toList();
+        bookIds.forEach(bookId -> eventPublisher.publishEvent(new BookStockChanged(bookId)));
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        if (books != null) {
+            bookIds.forEach(books::evict);
+        }
+    }
+
+    /**
+     * Drops the cached copy of a member whose loan count, and so version, changed; without it the
+     * cached member would carry a version older than the row's until it expired. Takes effect at commit.
+     */
+    private void evictMember(Long memberId) {
+        Cache members = cacheManager.getCache(CacheConfig.MEMBERS);
+        if (members != null) {
+            members.evict(memberId);
+        }
+    }
+
+    /**
+     * Counts the loan against the member and takes a copy off the shelf.
+     *
+     * @return the new, not yet persisted loan
+     */
+    private Borrow takeCopy(Long memberId, Long bookId) {
+        // The limit check and the loan count update are the same statement on the member row.
+        if (memberRepository.incrementActiveLoans(memberId, maxAllowedBooks) == 0) {
+            if (!memberRepository.existsById(memberId)) {
+                throw memberNotFound(memberId);
+            }
+            throw memberLimitReached();
+        }
+        evictMember(memberId);
+
+        // Check and decrement in one statement so concurrent borrows can never oversell a title;
+        // the inventory engine, when enabled, only lends copies it already took off the shelf.
+        boolean taken = inventoryEngine.isEnabled()
+                ? inventoryEngine.take(bookId)
+                : bookRepository.decrementAmount(bookId) > 0;
+        if (!taken) {
+            // Give the loan count back right away: inside a batch the transaction goes on.
+            memberRepository.decrementActiveLoans(memberId);
+            if (!bookRepository.existsById(bookId)) {
+                throw bookNotFound(bookId);
+            }
+            throw outOfStock();
+        }
+
+        return newLoan(memberId, bookId);
+    }
+
+    /** A loan of a copy already counted against the member and taken off the shelf. */
+    private Borrow newLoan(Long memberId, Long bookId) {
+        borrowStatsTracker.recordBorrow(bookId);
+        libraryMetrics.borrowed();
+
         Borrow borrow = new Borrow();
-        borrow.setMember(member);
-        borrow.setBook(book);
+        borrow.setMember(memberRepository.getReferenceById(memberId));
+        borrow.setBook(bookRepository.getReferenceById(bookId));
         borrow.setBorrowDate(LocalDate.now());
+        borrow.setDueDate(borrow.getBorrowDate().plusDays(loanDays));
+        return borrow;
+    }
+
+    /**
+     * Closes the loan and passes the copy to the oldest hold on the book, without touching the
+     * book row; only with no hold waiting does the copy go back on the shelf.
+     */
+    private void returnOne(Long memberId, Long bookId) {
+        if (borrowRepository.markReturned(memberId, bookId, LocalDate.now()) == 0) {
+            throw notBorrowed(memberId, bookId);
+        }
+        memberRepository.decrementActiveLoans(memberId);
+        evictMember(memberId);
+        borrowStatsTracker.recordReturn(bookId);
+        libraryMetrics.returned();
+        changeOutbox.record(Change.returned(memberId, bookId));
 
-        borrowRepository.save(borrow);
+        if (inventoryEngine.isEnabled()) {
+            inventoryEngine.putBack(bookId);
+        } else if (!lendToHolder(bookId)) {
+            bookRepository.incrementAmount(bookId);
+            // The increment waited for any hold placed meanwhile to commit (placeHold locks the
+            // book row), so a hold the first look missed is visible now and gets the copy.
+            if (lendToHolder(bookId)) {
+                bookRepository.decrementAmount(bookId);
+            }
+        }
+    }
 
-        book.setAmount(book.getAmount() - 1);
-        bookRepository.save(book);
+    /**
+     * Lends a copy, already off the shelf, to the member of the oldest hold who is under the loan
+     * limit. Holds of members at the limit are passed over and stay queued, in place, for a later copy.
+     *
+     * @return false if no hold could take the copy
+     */
+    private boolean lendToHolder(Long bookId) {
+        Optional<HoldDTO> hold;
+        long afterId = 0L;
+        while ((hold = holdQueue.next(bookId, afterId)).isPresent()) {
+            Long memberId = hold.get().getMemberId();
+            if (memberRepository.incrementActiveLoans(memberId, maxAllowedBooks) > 0) {
+                evictMember(memberId);
+                holdQueue.remove(hold.get().getId());
+                borrowRepository.save(newLoan(memberId, bookId));
+                changeOutbox.record(Change.borrowed(memberId, bookId));
+                libraryMetrics.holdFulfilled();
+                AfterCommit.run(() -> eventPublisher.publishEvent(new HoldFulfilled(memberId, bookId)));
+                return true;
+            }
+            afterId = hold.get().getId();
+        }
+        return false;
     }
 
-    public void returnBook(Long memberId, Long bookId) {
-        List<Borrow> borrows = borrowRepository.findByMemberIdAndReturnDateIsNull(memberId);
+    @Override
+    @Transactional
+    public HoldDTO placeHold(Long memberId, Long bookId) {
+        requireHolds();
+        if (!memberRepository.existsById(memberId)) {
+            throw memberNotFound(memberId);
+        }
+        // Locks the book row until this hold commits: a return that missed the hold puts its copy
+        // back only after that, and then looks again.
+        int amount = bookRepository.lockAmount(bookId).orElseThrow(() -> bookNotFound(bookId));
+        if (amount > 0) {
+            throw new IllegalStateException("Book is available; borrow it instead of placing a hold.");
+        }
+        HoldDTO hold = holdQueue.add(memberId, bookId)
+                .orElseThrow(() -> new IllegalStateException("Member already holds this book."));
+        libraryMetrics.holdPlaced();
+        return hold;
+    }
 
-        Borrow matchingBorrow = borrows.stream()
-                .filter(borrow -> borrow.getBook().getId().equals(bookId))
-                .findFirst()
-                .orElseThrow(() -> new NotFoundException("Book with ID " + bookId + " is not currently borrowed by member " + memberId));
+    @Override
+    @Transactional
+    public void cancelHold(Long memberId, Long bookId) {
+        if (!holdQueue.cancel(memberId, bookId)) {
+            throw new NotFoundException("Member " + memberId + " holds no copy of book with ID " + bookId);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<HoldDTO> getHolds(Long bookId, Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (!bookRepository.existsById(bookId)) {
+            throw bookNotFound(bookId);
+        }
+        return holdQueue.list(bookId, afterId != null ? afterId : 0L, Math.min(size, maxPageSize));
+    }
 
-        Book book = matchingBorrow.getBook();
-        book.setAmount(book.getAmount() + 1);
-        matchingBorrow.setReturnDate(LocalDate.now());
+    /**
+     * Lends the copies on the shelf to the book's holds, oldest first. Called by the book service
+     * and the book import after a restock, in their transaction, which also evicts and announces
+     * the book; copies left over stay on the shelf.
+     */
+    @Override
+    @Transactional
+    public int fulfilHolds(Long bookId) {
+        if (inventoryEngine.isEnabled() || borrowJournal.isEnabled()) {
+            return 0;
+        }
+        int copies = bookRepository.lockAmount(bookId).orElse(0);
+        int lent = 0;
+        while (lent < copies && lendToHolder(bookId)) {
+            lent++;
+        }
+        if (lent > 0) {
+            bookRepository.takeCopies(bookId, lent);
+        }
+        return lent;
+    }
 
-        borrowRepository.save(matchingBorrow);
-        bookRepository.save(book);
+    /**
+     * Copies handed over at return are never counted by the inventory engine or the borrow
+     * journal, so holds need the direct borrow path.
+     */
+    private void requireHolds() {
+        if (inventoryEngine.isEnabled() || borrowJournal.isEnabled()) {
+            throw new IllegalStateException("Holds are not available while the inventory engine or the borrow "
+                    + "journal is enabled.");
+        }
     }
 
+    /**
+     * Appends the loan to the borrow journal after the same checks as {@link #takeCopy}; the
+     * caller acknowledges it once the journal is synced.
+     */
+    private void journalBorrow(Long memberId, Long bookId) {
+        switch (borrowJournal.recordBorrow(memberId, bookId, maxAllowedBooks)) {
+            case MEMBER_NOT_FOUND -> throw memberNotFound(memberId);
+            case BOOK_NOT_FOUND -> throw bookNotFound(bookId);
+            case BEING_DELETED -> throw new IllegalStateException("Member or book is being deleted.");
+            case MEMBER_LIMIT_REACHED -> throw memberLimitReached();
+            case OUT_OF_STOCK -> throw outOfStock();
+            default -> {
+                borrowStatsTracker.recordBorrow(bookId);
+                libraryMetrics.borrowed();
+            }
+        }
+    }
 
+    private void journalReturn(Long memberId, Long bookId) {
+        if (borrowJournal.recordReturn(memberId, bookId) == BorrowJournal.Outcome.NOT_BORROWED) {
+            throw notBorrowed(memberId, bookId);
+        }
+        borrowStatsTracker.recordReturn(bookId);
+        libraryMetrics.returned();
+    }
+
+    private NotFoundException memberNotFound(Long memberId) {
+        return new NotFoundException("Member with ID " + memberId + " not found");
+    }
+
+    private NotFoundException bookNotFound(Long bookId) {
+        return new NotFoundException("Book with ID " + bookId + " not found");
+    }
+
+    private NotFoundException notBorrowed(Long memberId, Long bookId) {
+        return new NotFoundException("Book with ID " + bookId + " is not currently borrowed by member " + memberId);
+    }
+
+    private IllegalStateException memberLimitReached() {
+        libraryMetrics.memberLimitReached();
+        return new IllegalStateException("Member has reached the maximum allowed borrowed books.");
+    }
+
+    private IllegalStateException outOfStock() {
+        libraryMetrics.outOfStock();
+        return new IllegalStateException("Book is currently unavailable.");
+    }
 
     @Override
     public List<String> getBorrowedBooksByMemberName(String name) {
-        Member member = memberRepository.findByNameIgnoreCase(name)
-                .orElseThrow(() -> new NotFoundException("Member with name " + name + " not found"));
-
-        return borrowRepository.findByMemberIdAndReturnDateIsNull(member.getId())
-                .stream()
-                .map(b -> b.getBook().getTitle())
-                .collect(Collectors.toList());
+        List<String> titles = borrowRepository.findOpenLoanTitlesByMemberName(name);
+        // An empty result is either a member without loans or an unknown name; only then look the member up.
+        if (titles.isEmpty() && !memberRepository.existsByNameIgnoreCase(name)) {
+            throw new NotFoundException("Member with name " + name + " not found");
+        }
+        return titles;
     }
 
     @Override
     public List<String> getDistinctBorrowedBooks() {
+        if (borrowStatsTracker.isSeeded()) {
+            return borrowStatsTracker.getDistinctTitles();
+        }
         return borrowRepository.findAllBorrowedDistinctBookTitles();
     }
 
     @Override
     public List<BorrowedBookStatDTO> getBorrowedBookStats() {
+        if (borrowStatsTracker.isSeeded()) {
+            return borrowStatsTracker.getStats();
+        }
         return borrowRepository.findBorrowedBookTitleWithCount()
                 .stream()
                 .map(obj -> new BorrowedBookStatDTO((String) obj[0], (Long) obj[1]))
                 .collect(Collectors.toList());
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueLoanDTO> getOverdueLoans(Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        LocalDate afterDueDate = FIRST_DUE_DATE;
+        long cursor = 0L;
+        if (afterId != null) {
+            afterDueDate = borrowRepository.findDueDateById(afterId)
+                    .orElseThrow(() -> new NotFoundException("Loan with ID " + afterId + " not found"));
+            cursor = afterId;
+        }
+        return borrowRepository.findOverdue(LocalDate.now(), afterDueDate, cursor,
+                Limit.of(Math.min(size, maxPageSize)));
+    }
 }
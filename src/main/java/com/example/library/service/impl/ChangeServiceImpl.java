@@ -0,0 +1,180 @@
+package com.example.library.service.impl;
+
+import com.example.library.changes.ChangesSequenced;
+import com.example.library.dto.ChangeDTO;
+import com.example.library.exception.ChangesPrunedException;
+import com.example.library.metrics.LibraryMetrics;
+import com.example.library.service.ChangeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the change feed. A request with nothing new to return is parked until the sequencer
+ * numbers a change after its offset, or until it has waited long enough, and then gets an empty list.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChangeServiceImpl implements ChangeService {
+
+    private static final String CHANGES_SQL =
+            "SELECT seq, type, book_id, member_id, payload::text, created_at FROM change_outbox "
+                    + "WHERE seq > ? ORDER BY seq LIMIT ?";
+
+    /** The changes in disjoint ranges of offsets, each given by the offset before it and its last. */
+    private static final String RANGES_SQL =
+            "SELECT o.seq, o.type, o.book_id, o.member_id, o.payload::text, o.created_at "
+                    + "FROM unnest(?, ?) AS r(after, until) "
+                    + "JOIN change_outbox o ON o.seq > r.after AND o.seq <= r.until ORDER BY o.seq";
+
+    private static final String PRUNED_SQL = "SELECT pruned_seq FROM change_feed WHERE id = 1";
+
+    private static final RowMapper<ChangeDTO> CHANGE_MAPPER = (rs, row) -> new ChangeDTO(rs.getLong(1),
+            rs.getString(2), rs.getObject(3, Long.class), rs.getObject(4, Long.class), rs.getString(5),
+            rs.getTimestamp(6).toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LibraryMetrics libraryMetrics;
+
+    private final Set<Poll> polls = ConcurrentHashMap.newKeySet();
+
+    @Value("${page.size.limit}")
+    private int maxPageSize;
+
+    @Value("${changes.poll.max-wait}")
+    private long maxWaitMillis;
+
+    @Override
+    public CompletableFuture<List<ChangeDTO>> getChanges(long since, int size, long waitMillis, String consumer) {
+        if (since < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (consumer != null) {
+            libraryMetrics.changesConsumed(consumer, since);
+        }
+        Poll poll = new Poll(since, Math.min(size, maxPageSize), new CompletableFuture<>());
+        // Parked before reading, so a change numbered in between still wakes it.
+        polls.add(poll);
+        List<ChangeDTO> changes;
+        try {
+            changes = read(poll);
+        } catch (RuntimeException e) {
+            polls.remove(poll);
+            throw e;
+        }
+        if (!changes.isEmpty() || waitMillis <= 0) {
+            polls.remove(poll);
+            poll.result().complete(changes);
+            return poll.result();
+        }
+        return poll.result()
+                .completeOnTimeout(List.of(), Math.min(waitMillis, maxWaitMillis), TimeUnit.MILLISECONDS)
+                .whenComplete((result, failure) -> polls.remove(poll));
+    }
+
+    @Override
+    public long getHead() {
+        return jdbcTemplate.queryForObject("SELECT last_seq FROM change_feed WHERE id = 1", Long.class);
+    }
+
+    /**
+     * Answers the parked requests the new offsets reach from one read of the changes they wait
+     * for, and one read of the pruning watermark, however many requests are parked. Each request
+     * then takes the changes after its own offset, up to its page size.
+     */
+    @EventListener
+    void changesSequenced(ChangesSequenced event) {
+        List<Poll> reached = polls.stream()
+                .filter(poll -> event.lastSeq() > poll.since() && !poll.result().isDone())
+                .sorted(Comparator.comparingLong(Poll::since))
+                .toList();
+        if (reached.isEmpty()) {
+            return;
+        }
+        List<ChangeDTO> changes;
+        long pruned;
+        try {
+            changes = readRanges(reached, event.lastSeq());
+            pruned = prunedSeq();
+        } catch (RuntimeException e) {
+            reached.forEach(poll -> poll.result().completeExceptionally(e));
+            return;
+        }
+        for (Poll poll : reached) {
+            if (poll.since() < pruned) {
+                poll.result().completeExceptionally(pruned(pruned));
+                continue;
+            }
+            List<ChangeDTO> page = changes.stream()
+                    .filter(change -> change.getOffset() > poll.since())
+                    .limit(poll.size())
+                    .toList();
+            if (!page.isEmpty()) {
+                poll.result().complete(page);
+            }
+        }
+    }
+
+    /**
+     * The changes every poll could take, up to {@code lastSeq}: offsets are handed out without
+     * gaps, so a poll takes at most the {@code size} offsets after its own. Overlapping ranges are
+     * merged so no change is read twice; {@code polls} must be sorted by offset.
+     */
+    private List<ChangeDTO> readRanges(List<Poll> polls, long lastSeq) {
+        List<Long> after = new ArrayList<>();
+        List<Long> until = new ArrayList<>();
+        for (Poll poll : polls) {
+            long end = Math.min(lastSeq, poll.since() + poll.size());
+            int last = until.size() - 1;
+            if (last >= 0 && poll.since() <= until.get(last)) {
+                until.set(last, Math.max(until.get(last), end));
+            } else {
+                after.add(poll.since());
+                until.add(end);
+            }
+        }
+        return jdbcTemplate.query(RANGES_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", after.toArray(Long[]::new)));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", until.toArray(Long[]::new)));
+        }, CHANGE_MAPPER);
+    }
+
+    /**
+     * The pruning watermark is read after the changes: if it passed {@code since} meanwhile, the
+     * changes read may already miss some, and the consumer is told to start over.
+     */
+    private List<ChangeDTO> read(Poll poll) {
+        List<ChangeDTO> changes = jdbcTemplate.query(CHANGES_SQL, CHANGE_MAPPER, poll.since(), poll.size());
+        long pruned = prunedSeq();
+        if (poll.since() < pruned) {
+            throw pruned(pruned);
+        }
+        return changes;
+    }
+
+    private long prunedSeq() {
+        return jdbcTemplate.queryForObject(PRUNED_SQL, Long.class);
+    }
+
+    private static ChangesPrunedException pruned(long pruned) {
+        return new ChangesPrunedException("Changes up to offset " + pruned + " have been pruned; take the "
+                + "offset from /api/changes/head, read the current state and continue from that offset");
+    }
+
+    private record Poll(long since, int size, CompletableFuture<List<ChangeDTO>> result) {
+    }
+}
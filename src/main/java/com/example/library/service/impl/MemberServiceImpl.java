@@ -1,18 +1,36 @@
 package com.example.library.service.impl;
 
+import com.example.library.changes.Change;
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.changes.ChangeType;
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.LoanHistoryDTO;
 import com.example.library.dto.MemberDTO;
 import com.example.library.entity.Member;
 import com.example.library.exception.DeleteConstraintException;
 import com.example.library.exception.NotFoundException;
+import com.example.library.journal.BorrowJournal;
 import com.example.library.repository.BorrowRepository;
 import com.example.library.repository.MemberRepository;
+import com.example.library.repository.MemberSummary;
 import com.example.library.service.MemberService;
+import com.example.library.support.RetryOnConflict;
 import com.example.library.validation.MemberDTOValidator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -21,12 +39,29 @@ public class MemberServiceImpl implements MemberService {
     private final MemberRepository memberRepository;
     private final MemberDTOValidator memberDTOValidator;
     private final BorrowRepository borrowRepository;
+    private final BorrowJournal borrowJournal;
+    private final ChangeOutbox changeOutbox;
 
-    private MemberDTO toDTO(Member member) {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${page.size.limit}")
+    private int maxPageSize;
+
+    MemberDTO toDTO(Member member) {
+        return toDTO(member.getId(), member.getName(), member.getMembershipDate(), member.getVersion());
+    }
+
+    MemberDTO toDTO(MemberSummary member) {
+        return toDTO(member.id(), member.name(), member.membershipDate(), member.version());
+    }
+
+    private MemberDTO toDTO(Long id, String name, LocalDate membershipDate, long version) {
         MemberDTO dto = new MemberDTO();
-        dto.setId(member.getId());
-        dto.setName(member.getName());
-        dto.setMembershipDate(member.getMembershipDate());
+        dto.setId(id);
+        dto.setName(name);
+        dto.setMembershipDate(membershipDate);
+        dto.setVersion(version);
         return dto;
     }
 
@@ -38,40 +73,83 @@ public class MemberServiceImpl implements MemberService {
     }
 
     @Override
-    public List<MemberDTO> getAllMembers() {
-        return memberRepository.findAll().stream()
+    public List<MemberDTO> getAllMembers(Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long cursor = afterId != null ? afterId : 0L;
+        return memberRepository.findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(Math.min(size, maxPageSize))).stream()
                 .map(this::toDTO)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void streamMembers(Consumer<MemberDTO> consumer) {
+        try (Stream<Member> members = memberRepository.streamAll()) {
+            members.forEach(member -> {
+                consumer.accept(toDTO(member));
+                entityManager.detach(member);
+            });
+        }
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.MEMBERS, key = "#id", sync = true)
     public MemberDTO getMemberById(Long id) {
-        Member member = memberRepository.findById(id)
+        return memberRepository.findSummaryById(id)
+                .map(this::toDTO)
                 .orElseThrow(() -> new NotFoundException("Member with ID " + id + " not found"));
-        return toDTO(member);
     }
 
     @Override
+    public long getMemberVersion(Long id) {
+        return memberRepository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("Member with ID " + id + " not found"));
+    }
+
+    @Override
+    @Transactional
     public MemberDTO createMember(MemberDTO memberDTO) {
         memberDTOValidator.validate(memberDTO);
         Member member = toEntity(memberDTO);
         member.setMembershipDate(java.time.LocalDate.now());
         Member saved = memberRepository.save(member);
-        return toDTO(saved);
+        return recorded(ChangeType.MEMBER_CREATED, saved);
+    }
+
+    /**
+     * Writes the member now rather than at commit, so their row is locked and their version
+     * current before the change goes to the outbox.
+     */
+    private MemberDTO recorded(ChangeType type, Member member) {
+        memberRepository.flush();
+        MemberDTO dto = toDTO(member);
+        changeOutbox.record(Change.member(type, dto));
+        return dto;
     }
 
     @Override
+    @RetryOnConflict(Member.class)
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.MEMBERS, key = "#id")
     public MemberDTO updateMember(Long id, MemberDTO memberDTO) {
         memberDTOValidator.validate(memberDTO);
         Member member = memberRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Member with ID " + id + " not found"));
         member.setName(memberDTO.getName());
         Member updated = memberRepository.save(member);
-        return toDTO(updated);
+        return recorded(ChangeType.MEMBER_UPDATED, updated);
     }
 
     @Override
+    @RetryOnConflict(Member.class)
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.MEMBERS, key = "#id")
     public void deleteMember(Long id) {
+        // Loans still in the borrow journal must be in the table for the check below, and no new
+        // one may be acknowledged until the delete completes.
+        borrowJournal.closeMemberForDelete(id);
         Member member = memberRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Member with ID " + id + " not found"));
 
@@ -79,7 +157,34 @@ public class MemberServiceImpl implements MemberService {
         if (hasActiveBorrows) {
             throw new DeleteConstraintException("Cannot delete member with active borrowed books.");
         }
+        // The member does not map their loans, so the returned ones are removed here, in one statement.
+        borrowRepository.deleteByMemberId(id);
         memberRepository.delete(member);
+        memberRepository.flush();
+        changeOutbox.record(Change.memberDeleted(id));
+    }
+
+    /**
+     * Loans borrowed between {@code from} and {@code to}, by default the year up to today.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<LoanHistoryDTO> getBorrowHistory(Long memberId, LocalDate from, LocalDate to, Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        LocalDate until = to != null ? to : LocalDate.now();
+        LocalDate since = from != null ? from : until.minusYears(1);
+        if (since.isAfter(until)) {
+            throw new IllegalArgumentException("History start must not be after its end");
+        }
+        List<LoanHistoryDTO> loans = borrowRepository.findHistory(memberId, since, until,
+                afterId != null ? afterId : 0L, Limit.of(Math.min(size, maxPageSize)));
+        // An empty page is either a quiet period or an unknown member; only then look the member up.
+        if (loans.isEmpty() && !memberRepository.existsById(memberId)) {
+            throw new NotFoundException("Member with ID " + memberId + " not found");
+        }
+        return loans;
     }
 
 }
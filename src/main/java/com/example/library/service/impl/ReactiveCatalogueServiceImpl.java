@@ -0,0 +1,85 @@
+package com.example.library.service.impl;
+
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.entity.Book;
+import com.example.library.exception.NotFoundException;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
+import com.example.library.repository.ReactiveCatalogueRepository;
+import com.example.library.service.ReactiveCatalogueService;
+import com.example.library.stats.BorrowStatsTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the catalogue reads in {@link BookServiceImpl} and the statistics
+ * in {@link BorrowServiceImpl}. Writes are not offered here; they stay on the JPA services.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveCatalogueServiceImpl implements ReactiveCatalogueService {
+
+    private final ReactiveCatalogueRepository reactiveCatalogueRepository;
+    private final BorrowStatsTracker borrowStatsTracker;
+    private final CacheManager cacheManager;
+    private final InventoryEngine inventoryEngine;
+    private final BorrowJournal borrowJournal;
+
+    @Value("${page.size.limit}")
+    private int maxPageSize;
+
+    private BookDTO toDTO(Book book) {
+        BookDTO dto = new BookDTO();
+        dto.setId(book.getId());
+        dto.setTitle(book.getTitle());
+        dto.setAuthor(book.getAuthor());
+        dto.setAmount(book.getAmount() + inventoryEngine.available(book.getId())
+                - borrowJournal.unappliedLoans(book.getId()));
+        dto.setVersion(book.getVersion());
+        return dto;
+    }
+
+    @Override
+    public Flux<BookDTO> listBooks(Long afterId, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long cursor = afterId != null ? afterId : 0L;
+        return reactiveCatalogueRepository.findByIdGreaterThan(cursor, Math.min(size, maxPageSize)).map(this::toDTO);
+    }
+
+    @Override
+    public Flux<BookDTO> streamBooks(Long afterId) {
+        return reactiveCatalogueRepository.streamFrom(afterId != null ? afterId : 0L).map(this::toDTO);
+    }
+
+    @Override
+    public Mono<BookDTO> getBookById(Long id) {
+        // Served from the entry getBookById on the JPA path may have cached. The cache is only read
+        // here: a put from this side could race with the evictions issued by the writes.
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        BookDTO cached = books != null ? books.get(id, BookDTO.class) : null;
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveCatalogueRepository.findById(id)
+                .map(this::toDTO)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Book with ID " + id + " not found")));
+    }
+
+    @Override
+    public Flux<BorrowedBookStatDTO> getBorrowedBookStats() {
+        if (borrowStatsTracker.isSeeded()) {
+            return Flux.fromIterable(borrowStatsTracker.getStats());
+        }
+        return reactiveCatalogueRepository.findBorrowedBookTitleWithCount()
+                .map(row -> new BorrowedBookStatDTO((String) row[0], (Long) row[1]));
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.library.stats;
+
+import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.support.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the number of open loans per book in memory so the borrow statistics can be answered
+ * without aggregating the {@code borrow} table.
+ * <p>
+ * Changes are applied after the surrounding transaction commits. The counts are seeded from the
+ * database once the application is ready and compared with it periodically; until seeding has
+ * finished, {@link #isSeeded()} is false and callers should query the database instead.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BorrowStatsTracker {
+
+    private final BorrowRepository borrowRepository;
+    private final BookRepository bookRepository;
+
+    private final Map<Long, BookCount> counts = new ConcurrentHashMap<>();
+    // A lock rather than synchronized: the reconciliation blocks on JDBC while holding it,
+    // which would pin the carrier when scheduled work runs on virtual threads.
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private volatile boolean seeded;
+
+    /** Differences seen by the previous reconciliation, used only by {@link #reconcile()}. */
+    private Map<Long, Long> previousDrift = new HashMap<>();
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Records a new loan of the book once the current transaction commits. Must be called inside
+     * the transaction that created the loan, as the title of a book seen for the first time is
+     * read there.
+     */
+    public void recordBorrow(Long bookId) {
+        BookCount count = counts.get(bookId);
+        String title = count != null ? count.title : bookRepository.findTitleById(bookId).orElse(null);
+        AfterCommit.run(() -> counts.computeIfAbsent(bookId, id -> new BookCount(title)).active.incrementAndGet());
+    }
+
+    public void recordReturn(Long bookId) {
+        AfterCommit.run(() -> {
+            BookCount count = counts.get(bookId);
+            if (count != null) {
+                count.active.decrementAndGet();
+            }
+        });
+    }
+
+    public void renameBook(Long bookId, String title) {
+        AfterCommit.run(() -> {
+            BookCount count = counts.get(bookId);
+            if (count != null) {
+                count.title = title;
+            }
+        });
+    }
+
+    public void forgetBook(Long bookId) {
+        AfterCommit.run(() -> counts.remove(bookId));
+    }
+
+    /**
+     * @return active loan counts grouped by title, in title order; titles without open loans are left out
+     */
+    public List<BorrowedBookStatDTO> getStats() {
+        Map<String, Long> byTitle = new TreeMap<>();
+        for (BookCount count : counts.values()) {
+            long active = count.active.get();
+            if (active > 0 && count.title != null) {
+                byTitle.merge(count.title, active, Long::sum);
+            }
+        }
+        List<BorrowedBookStatDTO> stats = new ArrayList<>(byTitle.size());
+        byTitle.forEach((title, active) -> stats.add(new BorrowedBookStatDTO(title, active)));
+        return stats;
+    }
+
+    public List<String> getDistinctTitles() {
+        return getStats().stream().map(BorrowedBookStatDTO::getTitle).toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        for (Object[] row : borrowRepository.countActiveLoansByBook()) {
+            BookCount count = counts.computeIfAbsent((Long) row[0], id -> new BookCount((String) row[1]));
+            count.active.set((Long) row[2]);
+        }
+        seeded = true;
+        log.info("Borrow statistics seeded for {} books", counts.size());
+    }
+
+    /**
+     * Compares the in-memory counts with the database and fixes the differences.
+     * <p>
+     * A loan that commits while the aggregate runs can show up on one side only, so a difference
+     * is corrected only when the next run sees exactly the same difference again.
+     */
+    @Scheduled(fixedDelayString = "${borrow.stats.reconcile.interval}",
+            initialDelayString = "${borrow.stats.reconcile.interval}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        if (!seeded) {
+            return;
+        }
+        reconcileLock.lock();
+        try {
+            reconcileCounts();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void reconcileCounts() {
+        Map<Long, Long> actual = new HashMap<>();
+        for (Object[] row : borrowRepository.countActiveLoansByBook()) {
+            Long bookId = (Long) row[0];
+            actual.put(bookId, (Long) row[2]);
+            BookCount count = counts.computeIfAbsent(bookId, id -> new BookCount((String) row[1]));
+            count.title = (String) row[1];
+        }
+
+        Set<Long> bookIds = new HashSet<>(counts.keySet());
+        bookIds.addAll(actual.keySet());
+        Map<Long, Long> drift = new HashMap<>();
+        for (Long bookId : bookIds) {
+            BookCount count = counts.get(bookId);
+            long difference = actual.getOrDefault(bookId, 0L) - (count != null ? count.active.get() : 0L);
+            if (difference == 0) {
+                continue;
+            }
+            if (count != null && Long.valueOf(difference).equals(previousDrift.get(bookId))) {
+                count.active.addAndGet(difference);
+                log.warn("Borrow statistics for book {} were off by {}, corrected", bookId, difference);
+            } else {
+                drift.put(bookId, difference);
+            }
+        }
+        previousDrift = drift;
+    }
+
+    private static final class BookCount {
+        private volatile String title;
+        private final AtomicLong active = new AtomicLong();
+
+        private BookCount(String title) {
+            this.title = title;
+        }
+    }
+}
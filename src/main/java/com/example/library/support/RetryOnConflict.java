@@ -0,0 +1,33 @@
+package com.example.library.support;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs a method whose transaction lost an optimistic locking race, after a short randomized
+ * backoff. The retry wraps the method's transaction, so every attempt re-reads the current rows.
+ * Once the attempts are used up the conflict is rethrown.
+ * <p>
+ * The first argument of an annotated method identifies the row it writes: the entity id, or the
+ * DTO of a row that may not exist yet. Conflict metrics are tagged from it.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(retryFor = OptimisticLockingFailureException.class,
+        maxAttemptsExpression = "${optimistic.retry.max.attempts}",
+        backoff = @Backoff(delayExpression = "${optimistic.retry.delay}",
+                maxDelayExpression = "${optimistic.retry.max.delay}",
+                multiplier = 2, random = true))
+public @interface RetryOnConflict {
+
+    /** The entity the method writes. */
+    Class<?> value();
+}
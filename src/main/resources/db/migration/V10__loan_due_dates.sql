@@ -0,0 +1,15 @@
+-- Loans fall due borrow.loan.days after they are borrowed; existing loans get the default of 14.
+-- The partial index serves both the overdue listing and the overdue scanner, which walk the open
+-- loans in (due_date, id) order.
+ALTER TABLE borrow ADD COLUMN IF NOT EXISTS due_date DATE;
+UPDATE borrow SET due_date = borrow_date + 14 WHERE due_date IS NULL AND borrow_date IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_borrow_open_due ON borrow (due_date, id) WHERE return_date IS NULL;
+
+-- The last loan the overdue scanner has reported, in (due_date, loan_id) order. Each run only
+-- looks at open loans past it.
+CREATE TABLE IF NOT EXISTS overdue_scan (
+    id       INTEGER PRIMARY KEY CHECK (id = 1),
+    due_date DATE    NOT NULL,
+    loan_id  BIGINT  NOT NULL
+);
+INSERT INTO overdue_scan (id, due_date, loan_id) VALUES (1, DATE '0001-01-01', 0) ON CONFLICT (id) DO NOTHING;
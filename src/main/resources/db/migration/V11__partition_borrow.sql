@@ -0,0 +1,44 @@
+-- Splits borrow so that loan history no longer slows down the open-loan queries:
+--   borrow_current  open loans and recently returned ones (archived = false)
+--   borrow_archive  returned loans moved there by BorrowArchiver, in one cold partition per
+--                   year of borrow_date (borrow_archive_<year>, created by the archiver)
+-- The archive's CHECK lets the planner skip it for every "return_date IS NULL" query, and a
+-- history query for a date range reads only the archive partitions of those years.
+
+DROP INDEX IF EXISTS idx_borrow_open_member_book;
+DROP INDEX IF EXISTS idx_borrow_open_book;
+DROP INDEX IF EXISTS idx_borrow_open_due;
+ALTER TABLE borrow RENAME TO borrow_unpartitioned;
+ALTER TABLE borrow_unpartitioned RENAME CONSTRAINT borrow_pkey TO borrow_unpartitioned_pkey;
+
+-- Keys of a partitioned table must contain the partition keys, so borrow_date becomes required;
+-- the application has always set it.
+CREATE TABLE borrow (
+    id          BIGINT  NOT NULL DEFAULT nextval('borrow_seq'),
+    member_id   BIGINT  REFERENCES member (id),
+    book_id     BIGINT  REFERENCES book (id),
+    borrow_date DATE    NOT NULL,
+    due_date    DATE,
+    return_date DATE,
+    archived    BOOLEAN NOT NULL DEFAULT false,
+    PRIMARY KEY (id, archived, borrow_date)
+) PARTITION BY LIST (archived);
+
+CREATE TABLE borrow_current PARTITION OF borrow FOR VALUES IN (false);
+
+CREATE TABLE borrow_archive PARTITION OF borrow (CHECK (return_date IS NOT NULL))
+    FOR VALUES IN (true) PARTITION BY RANGE (borrow_date);
+
+-- Open-loan indexes as in V3 and V10; only borrow_current holds open loans.
+CREATE INDEX idx_borrow_open_member_book ON borrow_current (member_id, book_id) WHERE return_date IS NULL;
+CREATE INDEX idx_borrow_open_book ON borrow_current (book_id) WHERE return_date IS NULL;
+CREATE INDEX idx_borrow_open_due ON borrow_current (due_date, id) WHERE return_date IS NULL;
+
+-- Member history by date range, on every partition including archive years created later.
+CREATE INDEX idx_borrow_member_history ON borrow (member_id, borrow_date);
+
+INSERT INTO borrow (id, member_id, book_id, borrow_date, due_date, return_date)
+SELECT id, member_id, book_id, COALESCE(borrow_date, return_date, CURRENT_DATE), due_date, return_date
+FROM borrow_unpartitioned;
+
+DROP TABLE borrow_unpartitioned;
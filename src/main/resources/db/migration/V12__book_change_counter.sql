@@ -0,0 +1,24 @@
+-- Counts committed writes to book, so a page of the catalogue can be given an ETag without reading
+-- it (GET /api/books). Every transaction that writes books adds its writes to one of 16 rows,
+-- picked by its transaction id, and only at commit: concurrent writers rarely wait for the same
+-- row, never hold it while waiting for a book row, and the count becomes visible together with
+-- the rows it counts. The total is the sum of the 16 rows.
+CREATE TABLE book_change (
+    shard   SMALLINT PRIMARY KEY,
+    changes BIGINT   NOT NULL
+);
+
+INSERT INTO book_change (shard, changes)
+SELECT shard, 0 FROM generate_series(0, 15) shard;
+
+CREATE OR REPLACE FUNCTION book_change_count() RETURNS trigger AS $$
+BEGIN
+    UPDATE book_change SET changes = changes + 1 WHERE shard = txid_current() % 16;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE CONSTRAINT TRIGGER trg_book_change_count
+    AFTER INSERT OR UPDATE OR DELETE ON book
+    DEFERRABLE INITIALLY DEFERRED
+    FOR EACH ROW EXECUTE FUNCTION book_change_count();
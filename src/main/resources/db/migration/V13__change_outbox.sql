@@ -0,0 +1,25 @@
+-- Outbox of book, member and loan changes (GET /api/changes), written in the transaction that
+-- makes each change. A change gets its feed offset (seq) only once committed, from ChangeSequencer,
+-- which hands offsets out in one transaction at a time, so a reader never sees offset n + 1 before
+-- offset n. sequenced_at grows with seq, so the changes older than the retention are a prefix.
+CREATE TABLE change_outbox (
+    id           BIGSERIAL   PRIMARY KEY,
+    seq          BIGINT      UNIQUE,
+    type         VARCHAR(32) NOT NULL,
+    book_id      BIGINT,
+    member_id    BIGINT,
+    payload      JSONB,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now(),
+    sequenced_at TIMESTAMPTZ
+);
+
+CREATE INDEX idx_change_outbox_unsequenced ON change_outbox (id) WHERE seq IS NULL;
+
+-- The last offset handed out and the last offset pruned; offsets are never reused.
+CREATE TABLE change_feed (
+    id         INT    PRIMARY KEY CHECK (id = 1),
+    last_seq   BIGINT NOT NULL,
+    pruned_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_feed (id, last_seq, pruned_seq) VALUES (1, 0, 0);
@@ -0,0 +1,13 @@
+-- FIFO hold queues for books with no copies left (POST /api/borrow/hold/{memberId}/{bookId}).
+-- A hold's id is its place in its book's queue, so the head of a queue is the first entry for
+-- the book in idx_book_hold_queue. A return that finds the head locked by a concurrent return
+-- skips to the next hold (SKIP LOCKED) instead of waiting for it.
+CREATE TABLE book_hold (
+    id        BIGSERIAL   PRIMARY KEY,
+    book_id   BIGINT      NOT NULL REFERENCES book (id) ON DELETE CASCADE,
+    member_id BIGINT      NOT NULL REFERENCES member (id) ON DELETE CASCADE,
+    placed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    CONSTRAINT uq_book_hold_member UNIQUE (book_id, member_id)
+);
+
+CREATE INDEX idx_book_hold_queue ON book_hold (book_id, id);
@@ -0,0 +1,40 @@
+-- The counter from V12 updated its shard row once for every book row a transaction wrote, so an
+-- import chunk or a journal batch of N books rewrote the same row N times at commit, each update
+-- walking the versions left by the ones before it. Statement triggers now add up the rows each
+-- statement wrote, counted from its transition table, in a setting local to the transaction. The
+-- deferred trigger still fires per row at commit, but only the first firing writes the shard row,
+-- with the whole total; the others find nothing left to add and return. The row still becomes
+-- visible together with the books it counts, and is still only locked at commit.
+CREATE OR REPLACE FUNCTION book_change_collect() RETURNS trigger AS $$
+BEGIN
+    PERFORM set_config('library.book_changes',
+        (COALESCE(NULLIF(current_setting('library.book_changes', true), ''), '0')::BIGINT
+            + (SELECT count(*) FROM changed_rows))::TEXT, true);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- A trigger with transition tables can only have one event.
+CREATE TRIGGER trg_book_change_collect_insert
+    AFTER INSERT ON book REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_change_collect();
+
+CREATE TRIGGER trg_book_change_collect_update
+    AFTER UPDATE ON book REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_change_collect();
+
+CREATE TRIGGER trg_book_change_collect_delete
+    AFTER DELETE ON book REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_change_collect();
+
+CREATE OR REPLACE FUNCTION book_change_count() RETURNS trigger AS $$
+DECLARE
+    pending BIGINT := COALESCE(NULLIF(current_setting('library.book_changes', true), ''), '0')::BIGINT;
+BEGIN
+    IF pending > 0 THEN
+        PERFORM set_config('library.book_changes', '0', true);
+        UPDATE book_change SET changes = changes + pending WHERE shard = txid_current() % 16;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,23 @@
+-- Schema as previously generated by hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version instead of running it.
+
+CREATE TABLE book (
+    id     BIGSERIAL PRIMARY KEY,
+    title  VARCHAR(255),
+    author VARCHAR(255),
+    amount INTEGER NOT NULL
+);
+
+CREATE TABLE member (
+    id              BIGSERIAL PRIMARY KEY,
+    name            VARCHAR(255),
+    membership_date DATE
+);
+
+CREATE TABLE borrow (
+    id          BIGSERIAL PRIMARY KEY,
+    member_id   BIGINT REFERENCES member (id),
+    book_id     BIGINT REFERENCES book (id),
+    borrow_date DATE,
+    return_date DATE
+);
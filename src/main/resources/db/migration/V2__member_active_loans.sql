@@ -0,0 +1,9 @@
+-- Per-member count of open loans used to enforce member.borrow.limit.
+-- The column may already exist on databases that ran with ddl-auto=update.
+ALTER TABLE member ADD COLUMN IF NOT EXISTS active_loans INTEGER NOT NULL DEFAULT 0;
+
+UPDATE member m
+SET active_loans = (SELECT COUNT(*)
+                    FROM borrow b
+                    WHERE b.member_id = m.id
+                      AND b.return_date IS NULL);
@@ -0,0 +1,11 @@
+-- Replaced by the partial index below; may exist on databases that ran with ddl-auto=update.
+DROP INDEX IF EXISTS idx_borrow_member_book_open;
+
+-- Open loans by member: returnBook, getBorrowedBooksByMemberName, the delete-member check.
+CREATE INDEX idx_borrow_open_member_book ON borrow (member_id, book_id) WHERE return_date IS NULL;
+
+-- Open loans by book: the delete-book check and the borrowed-title aggregates.
+CREATE INDEX idx_borrow_open_book ON borrow (book_id) WHERE return_date IS NULL;
+
+-- addBook merges copies into an existing (title, author); this also serves that lookup.
+ALTER TABLE book ADD CONSTRAINT uk_book_title_author UNIQUE (title, author);
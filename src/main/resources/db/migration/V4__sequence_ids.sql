@@ -0,0 +1,21 @@
+-- Switch ids from IDENTITY to pooled sequences so Hibernate can batch inserts
+-- (IDENTITY forces one INSERT ... RETURNING round trip per row). The sequences
+-- stay as column defaults for plain SQL inserts.
+
+ALTER TABLE book ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS book_id_seq;
+CREATE SEQUENCE book_seq INCREMENT BY 50;
+SELECT setval('book_seq', COALESCE(MAX(id), 0) + 51, false) FROM book;
+ALTER TABLE book ALTER COLUMN id SET DEFAULT nextval('book_seq');
+
+ALTER TABLE member ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS member_id_seq;
+CREATE SEQUENCE member_seq INCREMENT BY 50;
+SELECT setval('member_seq', COALESCE(MAX(id), 0) + 51, false) FROM member;
+ALTER TABLE member ALTER COLUMN id SET DEFAULT nextval('member_seq');
+
+ALTER TABLE borrow ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS borrow_id_seq;
+CREATE SEQUENCE borrow_seq INCREMENT BY 50;
+SELECT setval('borrow_seq', COALESCE(MAX(id), 0) + 51, false) FROM borrow;
+ALTER TABLE borrow ALTER COLUMN id SET DEFAULT nextval('borrow_seq');
@@ -0,0 +1,3 @@
+-- Name lookups compare case-insensitively (UPPER(name) = UPPER(?)), which a plain index on
+-- name cannot serve.
+CREATE INDEX IF NOT EXISTS idx_member_name_upper ON member (UPPER(name));
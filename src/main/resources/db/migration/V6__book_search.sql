@@ -0,0 +1,36 @@
+-- Search over title and author (GET /api/books/search).
+-- Token and prefix matches go through a tsvector that PostgreSQL keeps up to date on every insert,
+-- update and delete. Typos are corrected against book_word, the distinct words of all titles and
+-- authors, which a trigger extends as books are written; words are not removed when the last book
+-- using them goes away, which only means a correction may lead to no results.
+-- pg_trgm ships with PostgreSQL but creating it may require a superuser on managed databases.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE book ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', title || ' ' || author)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_book_search_vector ON book USING GIN (search_vector);
+
+CREATE TABLE IF NOT EXISTS book_word (
+    word TEXT PRIMARY KEY
+);
+
+CREATE INDEX IF NOT EXISTS idx_book_word_trgm ON book_word USING GIN (word gin_trgm_ops);
+
+CREATE OR REPLACE FUNCTION book_word_collect() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO book_word (word)
+    SELECT lexeme FROM unnest(to_tsvector('simple', NEW.title || ' ' || NEW.author))
+    ON CONFLICT DO NOTHING;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_book_word_collect ON book;
+CREATE TRIGGER trg_book_word_collect
+    AFTER INSERT OR UPDATE OF title, author ON book
+    FOR EACH ROW EXECUTE FUNCTION book_word_collect();
+
+INSERT INTO book_word (word)
+SELECT DISTINCT lexeme FROM book, unnest(search_vector)
+ON CONFLICT DO NOTHING;
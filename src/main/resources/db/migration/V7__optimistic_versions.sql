@@ -0,0 +1,5 @@
+-- Optimistic locking: every write to a book or member row increments its version, including
+-- the bulk borrow/return and import statements, so an update based on a stale read fails
+-- instead of silently overwriting the newer row.
+ALTER TABLE book ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE member ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- Copies handed to the in-memory inventory engine (inventory.engine.enabled) are moved out of
+-- amount into reserved. reserved_open_loans is the book's open loan count when reserved was last
+-- written; it is NULL for books the engine does not manage. After a crash the engine returns
+-- reserved minus the loans opened since (net of returns) to amount.
+ALTER TABLE book ADD COLUMN IF NOT EXISTS reserved INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE book ADD COLUMN IF NOT EXISTS reserved_open_loans INTEGER;
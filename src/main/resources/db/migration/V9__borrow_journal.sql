@@ -0,0 +1,8 @@
+-- Progress of the write-behind borrow journal (borrow.journal.enabled): the sequence number of
+-- the last journal entry applied to borrow, member and book. It is advanced in the transaction
+-- that applies the entries, so entries are replayed after a crash exactly once.
+CREATE TABLE IF NOT EXISTS borrow_journal (
+    id          INTEGER PRIMARY KEY CHECK (id = 1),
+    applied_seq BIGINT  NOT NULL
+);
+INSERT INTO borrow_journal (id, applied_seq) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
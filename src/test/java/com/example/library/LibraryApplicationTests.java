@@ -1,10 +1,8 @@
 package com.example.library;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
-class LibraryApplicationTests {
+class LibraryApplicationTests extends PostgresIntegrationTest {
 
 	@Test
 	void contextLoads() {
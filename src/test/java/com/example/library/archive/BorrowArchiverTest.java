@@ -0,0 +1,149 @@
+package com.example.library.archive;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.LoanHistoryDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Borrow;
+import com.example.library.entity.Member;
+import com.example.library.exception.NotFoundException;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.MemberService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Archiving returned loans into yearly partitions, two per statement, and reading member history
+ * across them.
+ */
+@TestPropertySource(properties = {
+        "borrow.archive.after.days=30",
+        "borrow.archive.chunk.size=2"
+})
+class BorrowArchiverTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BorrowArchiver borrowArchiver;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Member member;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        member = new Member();
+        member.setName("Longtime Reader");
+        member.setMembershipDate(LocalDate.of(2019, 1, 1));
+        member = memberRepository.save(member);
+        book = new Book();
+        book.setTitle("Well Thumbed");
+        book.setAuthor("Classic Author");
+        book.setAmount(10);
+        book = bookRepository.save(book);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void returnedLoansMoveToTheArchiveOfTheirYear() {
+        Long early2021 = loan(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 20));
+        Long late2021 = loan(LocalDate.of(2021, 11, 5), LocalDate.of(2021, 12, 1));
+        Long from2022 = loan(LocalDate.of(2022, 6, 1), LocalDate.of(2022, 6, 15));
+        Long stillOpen = loan(LocalDate.of(2022, 7, 1), null);
+        Long recentlyReturned = loan(LocalDate.now().minusDays(20), LocalDate.now().minusDays(5));
+
+        borrowArchiver.archive();
+
+        assertEquals("borrow_archive_2021", partitionOf(early2021));
+        assertEquals("borrow_archive_2021", partitionOf(late2021));
+        assertEquals("borrow_archive_2022", partitionOf(from2022));
+        assertEquals("borrow_current", partitionOf(stillOpen));
+        assertEquals("borrow_current", partitionOf(recentlyReturned));
+        assertEquals(5, borrowRepository.count());
+    }
+
+    @Test
+    void historyIsPagedWithinTheRequestedDates() {
+        Long first = loan(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 20));
+        Long second = loan(LocalDate.of(2022, 6, 1), LocalDate.of(2022, 6, 15));
+        Long open = loan(LocalDate.of(2022, 7, 1), null);
+        loan(LocalDate.of(2023, 1, 10), LocalDate.of(2023, 2, 1));
+        borrowArchiver.archive();
+
+        LocalDate from = LocalDate.of(2021, 1, 1);
+        LocalDate to = LocalDate.of(2022, 12, 31);
+        List<LoanHistoryDTO> page = memberService.getBorrowHistory(member.getId(), from, to, null, 2);
+        assertEquals(List.of(first, second), page.stream().map(LoanHistoryDTO::getLoanId).toList());
+        assertEquals("Well Thumbed", page.get(0).getBookTitle());
+        assertEquals(LocalDate.of(2021, 3, 20), page.get(0).getReturnDate());
+
+        List<LoanHistoryDTO> next = memberService.getBorrowHistory(member.getId(), from, to, second, 2);
+        assertEquals(List.of(open), next.stream().map(LoanHistoryDTO::getLoanId).toList());
+        assertNull(next.get(0).getReturnDate());
+
+        assertThrows(NotFoundException.class,
+                () -> memberService.getBorrowHistory(member.getId() + 1000, from, to, null, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> memberService.getBorrowHistory(member.getId(), to, from, null, 2));
+    }
+
+    @Test
+    void historyReadsOnlyThePartitionsOfItsYearsAndOpenLoansSkipTheArchive() {
+        loan(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 20));
+        loan(LocalDate.of(2022, 6, 1), LocalDate.of(2022, 6, 15));
+        borrowArchiver.archive();
+
+        String history = explain("SELECT * FROM borrow WHERE member_id = " + member.getId()
+                + " AND borrow_date BETWEEN DATE '2022-01-01' AND DATE '2022-12-31'");
+        assertTrue(history.contains("borrow_archive_2022"), history);
+        assertFalse(history.contains("borrow_archive_2021"), history);
+
+        String openLoans = explain("SELECT * FROM borrow WHERE member_id = " + member.getId()
+                + " AND return_date IS NULL");
+        assertTrue(openLoans.contains("borrow_current"), openLoans);
+        assertFalse(openLoans.contains("borrow_archive"), openLoans);
+    }
+
+    private Long loan(LocalDate borrowed, LocalDate returned) {
+        Borrow borrow = new Borrow();
+        borrow.setMember(member);
+        borrow.setBook(book);
+        borrow.setBorrowDate(borrowed);
+        borrow.setDueDate(borrowed.plusDays(14));
+        borrow.setReturnDate(returned);
+        return borrowRepository.save(borrow).getId();
+    }
+
+    private String partitionOf(Long loanId) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM borrow WHERE id = ?",
+                String.class, loanId);
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+}
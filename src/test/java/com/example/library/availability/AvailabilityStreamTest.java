@@ -0,0 +1,153 @@
+package com.example.library.availability;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.metrics.StatementCounter;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Availability streams: the first event, one coalesced event per burst of changes, nothing for a
+ * burst that ends where it started, and one query per run whatever the number of subscribers.
+ * The scheduled sends are pushed back so each test decides when a run happens.
+ */
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "availability.stream.interval=3600000",
+        "availability.stream.heartbeat=3600000"
+})
+class AvailabilityStreamTest extends PostgresIntegrationTest {
+
+    private static final Pattern AVAILABLE = Pattern.compile("\"available\":(\\d+)");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private AvailabilityBroadcaster availabilityBroadcaster;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    private Book book;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        book = book("Kiosk Favourite", 3);
+        member = new Member();
+        member.setName("Kiosk Reader");
+        member.setMembershipDate(LocalDate.now());
+        member = memberRepository.save(member);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void burstOfChangesIsSentAsOneEvent() throws Exception {
+        MockHttpServletResponse stream = subscribe(book.getId());
+        assertEquals(List.of(3), counts(stream));
+        assertTrue(stream.getContentAsString().contains("event:availability"), stream.getContentAsString());
+
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.returnBook(member.getId(), book.getId());
+        availabilityBroadcaster.publish();
+        assertEquals(List.of(3, 2), counts(stream));
+
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.returnBook(member.getId(), book.getId());
+        availabilityBroadcaster.publish();
+        assertEquals(List.of(3, 2), counts(stream));
+
+        BookDTO restocked = bookService.getBookById(book.getId());
+        restocked.setAmount(7);
+        bookService.updateBook(book.getId(), restocked);
+        availabilityBroadcaster.publish();
+        assertEquals(List.of(3, 2, 7), counts(stream));
+    }
+
+    @Test
+    void oneQueryServesEverySubscriber() throws Exception {
+        Book other = book("Kiosk Runner Up", 1);
+        List<MockHttpServletResponse> streams = List.of(subscribe(book.getId()), subscribe(book.getId()),
+                subscribe(book.getId()), subscribe(other.getId()));
+
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.borrowBook(member.getId(), other.getId());
+        StatementCounter.reset();
+        availabilityBroadcaster.publish();
+
+        assertEquals(1, StatementCounter.current());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of(3, 2), counts(streams.get(i)));
+        }
+        assertEquals(List.of(1, 0), counts(streams.get(3)));
+    }
+
+    @Test
+    void changesOfBooksWithoutSubscribersAreNotRead() throws Exception {
+        subscribe(book.getId());
+        Book unwatched = book("Kiosk Unwatched", 2);
+
+        borrowService.borrowBook(member.getId(), unwatched.getId());
+        StatementCounter.reset();
+        availabilityBroadcaster.publish();
+
+        assertEquals(0, StatementCounter.current());
+    }
+
+    private MockHttpServletResponse subscribe(Long bookId) throws Exception {
+        return mockMvc.perform(get("/api/books/{id}/availability/stream", bookId).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    private static List<Integer> counts(MockHttpServletResponse stream) throws Exception {
+        Matcher matcher = AVAILABLE.matcher(stream.getContentAsString());
+        return matcher.results().map(match -> Integer.parseInt(match.group(1))).toList();
+    }
+
+    private Book book(String title, int amount) {
+        Book created = new Book();
+        created.setTitle(title);
+        created.setAuthor("Kiosk Author");
+        created.setAmount(amount);
+        return bookRepository.save(created);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.library.changes;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.ChangeDTO;
+import com.example.library.dto.MemberDTO;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import com.example.library.service.ChangeService;
+import com.example.library.service.MemberService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The change feed: what the writers record, the order it is numbered in, long polls, pruning and
+ * consumer lag. Every test reads only the changes after the head it started from.
+ */
+@AutoConfigureMockMvc
+class ChangeFeedTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ChangeService changeService;
+    @Autowired
+    private ChangeSequencer changeSequencer;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private long head;
+
+    @BeforeEach
+    void setUp() {
+        changeSequencer.sequence();
+        head = changeService.getHead();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void changesAreNumberedInTheOrderTheyCommitted() throws Exception {
+        BookDTO book = bookService.addBook(book("Feed Story", 2));
+        MemberDTO member = memberService.createMember(member("Feed Reader"));
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.returnBook(member.getId(), book.getId());
+        book.setTitle("Feed Story Revised");
+        bookService.updateBook(book.getId(), book);
+        bookService.deleteBook(book.getId());
+        changeSequencer.sequence();
+
+        List<ChangeDTO> changes = changeService.getChanges(head, 100, 0, null).get();
+        assertEquals(List.of("BOOK_CREATED", "MEMBER_CREATED", "BOOK_BORROWED", "BOOK_RETURNED", "BOOK_UPDATED",
+                "BOOK_DELETED"), changes.stream().map(ChangeDTO::getType).toList());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(head + i + 1, changes.get(i).getOffset());
+        }
+        assertEquals(member.getId(), changes.get(2).getMemberId());
+        assertEquals(book.getId(), changes.get(2).getBookId());
+        assertTrue(changes.get(4).getPayload().contains("\"Feed Story Revised\""), changes.get(4).getPayload());
+        assertNull(changes.get(5).getPayload());
+        assertEquals(head + 6, changeService.getHead());
+
+        List<ChangeDTO> page = changeService.getChanges(head + 2, 2, 0, null).get();
+        assertEquals(List.of(head + 3, head + 4), page.stream().map(ChangeDTO::getOffset).toList());
+    }
+
+    @Test
+    void waitingPollIsAnsweredByTheNextChange() throws Exception {
+        MvcResult poll = mockMvc.perform(get("/api/changes")
+                        .param("since", String.valueOf(head))
+                        .param("wait", "20000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        BookDTO book = bookService.addBook(book("Awaited Story", 1));
+        changeSequencer.sequence();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].offset").value(head + 1))
+                .andExpect(jsonPath("$[0].type").value("BOOK_CREATED"))
+                .andExpect(jsonPath("$[0].bookId").value(book.getId()))
+                .andExpect(jsonPath("$[0].payload.title").value("Awaited Story"));
+    }
+
+    @Test
+    void parkedPollsEachTakeTheirOwnPageOfTheNewChanges() throws Exception {
+        CompletableFuture<List<ChangeDTO>> first = changeService.getChanges(head, 1, 20000, null);
+        CompletableFuture<List<ChangeDTO>> third = changeService.getChanges(head + 2, 1, 20000, null);
+        CompletableFuture<List<ChangeDTO>> rest = changeService.getChanges(head + 2, 100, 20000, null);
+        assertFalse(first.isDone() || third.isDone() || rest.isDone());
+
+        for (int i = 1; i <= 4; i++) {
+            bookService.addBook(book("Fanned Out " + i, 1));
+        }
+        changeSequencer.sequence();
+
+        assertEquals(List.of(head + 1), offsets(first));
+        assertEquals(List.of(head + 3), offsets(third));
+        assertEquals(List.of(head + 3, head + 4), offsets(rest));
+    }
+
+    @Test
+    void pollWithNothingNewEndsEmptyAfterItsWait() throws Exception {
+        MvcResult poll = mockMvc.perform(get("/api/changes")
+                        .param("since", String.valueOf(head))
+                        .param("wait", "100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void readingFromAPrunedOffsetIsGone() throws Exception {
+        bookService.addBook(book("Short Lived", 1));
+        bookService.addBook(book("Longer Lived", 1));
+        changeSequencer.sequence();
+        jdbcTemplate.update("UPDATE change_outbox SET sequenced_at = now() - interval '30 days' WHERE seq <= ?",
+                head + 1);
+
+        changeSequencer.prune();
+
+        mockMvc.perform(get("/api/changes").param("since", String.valueOf(head)).param("wait", "0"))
+                .andExpect(status().isGone());
+        assertEquals(List.of(head + 2), changeService.getChanges(head + 1, 100, 0, null).get().stream()
+                .map(ChangeDTO::getOffset).toList());
+    }
+
+    @Test
+    void consumerLagIsTheChangesAfterItsLastRead() throws Exception {
+        bookService.addBook(book("Lagging One", 1));
+        bookService.addBook(book("Lagging Two", 1));
+        bookService.addBook(book("Lagging Three", 1));
+        changeSequencer.sequence();
+
+        changeService.getChanges(head + 1, 100, 0, "search-indexer").get();
+
+        assertEquals(2.0, meterRegistry.get("library.changes.consumer.lag")
+                .tag("consumer", "search-indexer").gauge().value());
+        assertEquals((double) (head + 3), meterRegistry.get("library.changes.head").gauge().value());
+    }
+
+    private static List<Long> offsets(CompletableFuture<List<ChangeDTO>> poll) throws Exception {
+        return poll.get(5, TimeUnit.SECONDS).stream().map(ChangeDTO::getOffset).toList();
+    }
+
+    private static BookDTO book(String title, int amount) {
+        BookDTO book = new BookDTO();
+        book.setTitle(title);
+        book.setAuthor("Feed Author");
+        book.setAmount(amount);
+        return book;
+    }
+
+    private static MemberDTO member(String name) {
+        MemberDTO member = new MemberDTO();
+        member.setName(name);
+        return member;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.library.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigTest {
+
+    @Test
+    void disabledCacheFallsBackToNoOp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("cache.books.enabled", "false")
+                .withProperty("cache.members.max-size", "5");
+
+        CacheManager cacheManager = new CacheConfig().cacheManager(environment);
+
+        assertInstanceOf(NoOpCache.class, target(cacheManager, CacheConfig.BOOKS));
+        CaffeineCache members = assertInstanceOf(CaffeineCache.class, target(cacheManager, CacheConfig.MEMBERS));
+        assertEquals(5, members.getNativeCache().policy().eviction().orElseThrow().getMaximum());
+    }
+
+    @Test
+    void unknownCacheNamesAreNotCreatedOnDemand() {
+        CacheManager cacheManager = new CacheConfig().cacheManager(new MockEnvironment());
+
+        assertInstanceOf(NoOpCache.class, target(cacheManager, "unknown"));
+    }
+
+    private Object target(CacheManager cacheManager, String name) {
+        return ((TransactionAwareCacheDecorator) cacheManager.getCache(name)).getTargetCache();
+    }
+}
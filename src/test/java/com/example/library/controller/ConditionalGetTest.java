@@ -0,0 +1,165 @@
+package com.example.library.controller;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.MemberDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.metrics.StatementCounter;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.MemberService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional GETs of books and members: a repeated request with the ETag it was given gets a 304
+ * until the data changes, without reading the representation.
+ */
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "http.cache-control.max-age=30s")
+class ConditionalGetTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Book book;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        book = new Book();
+        book.setTitle("Often Polled");
+        book.setAuthor("Steady Author");
+        book.setAmount(2);
+        book = bookRepository.save(book);
+        member = new Member();
+        member.setName("Polling Reader");
+        member.setMembershipDate(LocalDate.now());
+        member = memberRepository.save(member);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void unchangedBookIsNotSentAgainUntilItIsBorrowed() throws Exception {
+        String etag = etagOf("/api/books/{id}", book.getId());
+
+        mockMvc.perform(get("/api/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30"));
+        assertEquals(1, StatementCounter.current());
+
+        mockMvc.perform(post("/api/borrow/{memberId}/{bookId}", member.getId(), book.getId()))
+                .andExpect(status().isOk());
+        String borrowed = mockMvc.perform(get("/api/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, borrowed);
+    }
+
+    @Test
+    void catalogueTagChangesWithAnyBookWrite() throws Exception {
+        String etag = etagOf("/api/books");
+        mockMvc.perform(get("/api/books").header(HttpHeaders.IF_NONE_MATCH, "\"0\", W/" + etag))
+                .andExpect(status().isNotModified());
+        assertEquals(1, StatementCounter.current());
+
+        BookDTO added = new BookDTO();
+        added.setTitle("New Arrival");
+        added.setAuthor("Fresh Author");
+        added.setAmount(1);
+        bookService.addBook(added);
+
+        mockMvc.perform(get("/api/books").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void catalogueCounterAddsUpEveryRowOfABulkWriteAtCommit() {
+        long before = bookRepository.countChanges();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO book (title, author, amount) "
+                    + "SELECT 'Bulk Title ' || g, 'Bulk Author', 1 FROM generate_series(1, 50) g");
+            jdbcTemplate.update("UPDATE book SET amount = 2 WHERE author = 'Bulk Author' AND title LIKE '% 1%'");
+            jdbcTemplate.update("DELETE FROM book WHERE author = 'Bulk Author' AND title LIKE '% 2%'");
+            // Nothing is counted before commit.
+            assertEquals(before, bookRepository.countChanges());
+        });
+
+        // 50 inserted, 11 updated (1, 10-19) and 11 deleted (2, 20-29).
+        assertEquals(before + 72, bookRepository.countChanges());
+    }
+
+    @Test
+    void memberTagChangesWithTheMemberAsShown() throws Exception {
+        String etag = etagOf("/api/members/{id}", member.getId());
+        mockMvc.perform(get("/api/members/{id}", member.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // A loan moves the member's version and evicts the cached member, so the new tag is served at once.
+        mockMvc.perform(post("/api/borrow/{memberId}/{bookId}", member.getId(), book.getId()))
+                .andExpect(status().isOk());
+        String afterLoan = mockMvc.perform(get("/api/members/{id}", member.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, afterLoan);
+        mockMvc.perform(get("/api/members/{id}", member.getId()).header(HttpHeaders.IF_NONE_MATCH, afterLoan))
+                .andExpect(status().isNotModified());
+        etag = afterLoan;
+
+        MemberDTO renamed = new MemberDTO();
+        renamed.setName("Renamed Reader");
+        memberService.updateMember(member.getId(), renamed);
+        mockMvc.perform(get("/api/members/{id}", member.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    private String etagOf(String uri, Object... variables) throws Exception {
+        String etag = mockMvc.perform(get(uri, variables))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.library.controller;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.metrics.StatementCounter;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * SQL statements per read endpoint, for a book and member with a long loan history. The caches
+ * are off so that every request reaches the database.
+ */
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "cache.books.enabled=false",
+        "cache.members.enabled=false"
+})
+class EndpointStatementCountTest extends PostgresIntegrationTest {
+
+    private static final int LOANS = 300;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        book = new Book();
+        book.setTitle("Much Borrowed");
+        book.setAuthor("Popular Author");
+        book.setAmount(3);
+        book = bookRepository.save(book);
+        member = new Member();
+        member.setName("Regular Reader");
+        member.setMembershipDate(LocalDate.now());
+        member = memberRepository.save(member);
+        jdbcTemplate.update("INSERT INTO borrow (member_id, book_id, borrow_date, due_date, return_date) "
+                        + "SELECT ?, ?, CURRENT_DATE - d, CURRENT_DATE - d + 14, CURRENT_DATE - d + 7 "
+                        + "FROM generate_series(1, ?) d",
+                member.getId(), book.getId(), LOANS);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void readEndpointsIssueTheSameStatementsRegardlessOfLoanHistory() throws Exception {
+        // The ETagged reads first read a version or change count, then the representation.
+        assertEquals(2, statements(get("/api/books").param("size", "50")));
+        assertEquals(2, statements(get("/api/books/{id}", book.getId())));
+        assertEquals(1, statements(get("/api/members").param("size", "50")));
+        assertEquals(2, statements(get("/api/members/{id}", member.getId())));
+    }
+
+    @Test
+    void deletingABookOrMemberRemovesTheirReturnedLoans() throws Exception {
+        mockMvc.perform(delete("/api/books/{id}", book.getId())).andExpect(status().is2xxSuccessful());
+        assertEquals(0, borrowRepository.count());
+        mockMvc.perform(delete("/api/members/{id}", member.getId())).andExpect(status().is2xxSuccessful());
+        assertEquals(0, memberRepository.count());
+    }
+
+    private int statements(RequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().isOk());
+        // MockMvc serves the request on this thread, so the counter holds that request's statements.
+        return StatementCounter.current();
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.library.holds;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.availability.BookStockChanged;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.HoldDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookImportService;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hold queues against PostgreSQL: returned, restocked and imported copies go to the oldest holds whose
+ * members are under the loan limit, and concurrent returns of one book serve different holds.
+ */
+@RecordApplicationEvents
+class HoldQueueTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookImportService bookImportService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationEvents events;
+
+    @Value("${member.borrow.limit}")
+    private int borrowLimit;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        book = new Book();
+        book.setTitle("Waiting List");
+        book.setAuthor("Popular Author");
+        book.setAmount(1);
+        book = bookRepository.save(book);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM book_hold");
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void returnedCopiesGoToTheOldestHolds() {
+        Long reader = member("First Reader");
+        Long second = member("Second Reader");
+        Long third = member("Third Reader");
+        borrowService.borrowBook(reader, book.getId());
+
+        assertThrows(IllegalStateException.class, () -> borrowService.borrowBook(second, book.getId()));
+        HoldDTO secondHold = borrowService.placeHold(second, book.getId());
+        HoldDTO thirdHold = borrowService.placeHold(third, book.getId());
+        assertThrows(IllegalStateException.class, () -> borrowService.placeHold(third, book.getId()));
+        assertEquals(List.of(secondHold.getId(), thirdHold.getId()),
+                borrowService.getHolds(book.getId(), null, 10).stream().map(HoldDTO::getId).toList());
+
+        borrowService.returnBook(reader, book.getId());
+
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(second));
+        assertFalse(borrowRepository.existsByMemberIdAndReturnDateIsNull(third));
+        assertEquals(0, amount());
+        assertEquals(List.of(new HoldFulfilled(second, book.getId())), events.stream(HoldFulfilled.class).toList());
+        assertEquals(List.of(thirdHold.getId()),
+                borrowService.getHolds(book.getId(), null, 10).stream().map(HoldDTO::getId).toList());
+
+        borrowService.returnBook(second, book.getId());
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(third));
+        borrowService.returnBook(third, book.getId());
+        assertEquals(1, amount());
+        assertTrue(borrowService.getHolds(book.getId(), null, 10).isEmpty());
+    }
+
+    @Test
+    void restockedCopiesGoToTheHoldsFirst() {
+        Long reader = member("Shelf Reader");
+        Long waiting = member("Waiting Reader");
+        borrowService.borrowBook(reader, book.getId());
+        borrowService.placeHold(waiting, book.getId());
+
+        BookDTO restock = bookService.getBookById(book.getId());
+        restock.setAmount(3);
+        BookDTO updated = bookService.updateBook(book.getId(), restock);
+
+        assertEquals(2, updated.getAmount());
+        assertEquals(2, amount());
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(waiting));
+        assertTrue(borrowService.getHolds(book.getId(), null, 10).isEmpty());
+    }
+
+    @Test
+    void importedCopiesGoToTheHoldsFirst() throws IOException {
+        Long reader = member("Shelf Reader");
+        Long waiting = member("Waiting Reader");
+        borrowService.borrowBook(reader, book.getId());
+        borrowService.placeHold(waiting, book.getId());
+        events.clear();
+
+        String csv = "Waiting List,Popular Author,2\n";
+        bookImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, amount());
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(waiting));
+        assertTrue(borrowService.getHolds(book.getId(), null, 10).isEmpty());
+        assertEquals(List.of(new BookStockChanged(book.getId())), events.stream(BookStockChanged.class).toList());
+        assertEquals(1, bookService.getBookById(book.getId()).getAmount());
+    }
+
+    @Test
+    void holdOfMemberAtLimitKeepsItsPlace() {
+        Long reader = member("Limit Reader");
+        Long busy = member("Busy Reader");
+        Long next = member("Next Reader");
+        borrowService.borrowBook(reader, book.getId());
+        HoldDTO busyHold = borrowService.placeHold(busy, book.getId());
+        borrowService.placeHold(next, book.getId());
+        jdbcTemplate.update("UPDATE member SET active_loans = ? WHERE id = ?", borrowLimit, busy);
+
+        borrowService.returnBook(reader, book.getId());
+
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(next));
+        assertEquals(List.of(busyHold.getId()),
+                borrowService.getHolds(book.getId(), null, 10).stream().map(HoldDTO::getId).toList());
+
+        jdbcTemplate.update("UPDATE member SET active_loans = 0 WHERE id = ?", busy);
+        borrowService.returnBook(next, book.getId());
+
+        assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(busy));
+        assertTrue(borrowService.getHolds(book.getId(), null, 10).isEmpty());
+        assertEquals(0, amount());
+    }
+
+    @Test
+    void concurrentReturnsServeDifferentHolds() throws Exception {
+        bookRepository.save(setAmount(8));
+        List<Long> readers = new ArrayList<>();
+        List<Long> waiting = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Long reader = member("Reader " + (char) ('A' + i));
+            borrowService.borrowBook(reader, book.getId());
+            readers.add(reader);
+        }
+        for (int i = 0; i < 8; i++) {
+            Long member = member("Waiting " + (char) ('A' + i));
+            borrowService.placeHold(member, book.getId());
+            waiting.add(member);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> returns = new ArrayList<>();
+            for (Long reader : readers) {
+                returns.add(pool.submit(() -> borrowService.returnBook(reader, book.getId())));
+            }
+            for (Future<?> result : returns) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Long member : waiting) {
+            assertTrue(borrowRepository.existsByMemberIdAndReturnDateIsNull(member));
+        }
+        assertEquals(0, amount());
+        assertTrue(borrowService.getHolds(book.getId(), null, 10).isEmpty());
+    }
+
+    private Book setAmount(int amount) {
+        Book stocked = bookRepository.findById(book.getId()).orElseThrow();
+        stocked.setAmount(amount);
+        return stocked;
+    }
+
+    private Long member(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setMembershipDate(LocalDate.now());
+        return memberRepository.save(member).getId();
+    }
+
+    private int amount() {
+        return jdbcTemplate.queryForObject("SELECT amount FROM book WHERE id = ?", Integer.class, book.getId());
+    }
+}
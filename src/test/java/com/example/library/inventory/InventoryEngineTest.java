@@ -0,0 +1,204 @@
+package com.example.library.inventory;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Borrowing through the inventory engine, with blocks of three copies and write-back only when
+ * a test asks for it.
+ */
+@TestPropertySource(properties = {
+        "inventory.engine.enabled=true",
+        "inventory.engine.block.size=3",
+        "inventory.engine.flush.interval=3600000"
+})
+class InventoryEngineTest extends PostgresIntegrationTest {
+
+    private static final int COPIES = 10;
+
+    @Autowired
+    private InventoryEngine inventoryEngine;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long bookId;
+    private final List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setTitle("Launch Day Bestseller");
+        book.setAuthor("Famous Author");
+        book.setAmount(COPIES);
+        bookId = bookRepository.save(book).getId();
+
+        for (int i = 0; i < 40; i++) {
+            Member member = new Member();
+            member.setName("Queue Reader " + i);
+            member.setMembershipDate(LocalDate.now());
+            memberIds.add(memberRepository.save(member).getId());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        inventoryEngine.abandon();
+        memberIds.clear();
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void copiesAreReservedFromTheShelfInBlocks() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+
+        assertEquals(COPIES - 3, shelf());
+        assertEquals(3, reserved());
+        assertEquals(COPIES - 1, bookService.getBookById(bookId).getAmount());
+    }
+
+    @Test
+    void concurrentBorrowsNeverOversell() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger borrowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long memberId : memberIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        borrowService.borrowBook(memberId, bookId);
+                        borrowed.incrementAndGet();
+                    } catch (IllegalStateException ignored) {
+                        // out of stock
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(COPIES, borrowed.get());
+        assertEquals(COPIES, borrowRepository.count());
+        assertEquals(0, shelf());
+        assertEquals(0, inventoryEngine.available(bookId));
+    }
+
+    @Test
+    void rolledBackBorrowGivesTheCopyBack() {
+        transactionTemplate.executeWithoutResult(status -> {
+            borrowService.borrowBook(memberIds.get(0), bookId);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(COPIES, bookService.getBookById(bookId).getAmount());
+        assertEquals(0, borrowRepository.count());
+    }
+
+    @Test
+    void recoveryAfterCrashRestoresExactlyTheUnlentCopies() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+        borrowService.borrowBook(memberIds.get(1), bookId);
+        inventoryEngine.writeBack();
+        // Not written back: one loan from the allotment, one that needs a new block, one return.
+        borrowService.borrowBook(memberIds.get(2), bookId);
+        borrowService.borrowBook(memberIds.get(3), bookId);
+        borrowService.returnBook(memberIds.get(0), bookId);
+
+        inventoryEngine.abandon();
+        inventoryEngine.recover();
+
+        assertEquals(COPIES - 3, shelf());
+        assertEquals(0, reserved());
+        assertNull(jdbcTemplate.queryForObject("SELECT reserved_open_loans FROM book WHERE id = ?",
+                Integer.class, bookId));
+    }
+
+    @Test
+    void updateReturnsHeldCopiesBeforeSettingTheStock() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+
+        BookDTO update = new BookDTO();
+        update.setTitle("Launch Day Bestseller");
+        update.setAuthor("Famous Author");
+        update.setAmount(20);
+        bookService.updateBook(bookId, update);
+
+        assertEquals(20, shelf());
+        assertEquals(0, reserved());
+        assertEquals(20, bookService.getBookById(bookId).getAmount());
+    }
+
+    @Test
+    void rolledBackUpdateLeavesTheHeldCopiesWithTheEngine() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            BookDTO update = new BookDTO();
+            update.setTitle("Launch Day Bestseller");
+            update.setAuthor("Famous Author");
+            update.setAmount(20);
+            bookService.updateBook(bookId, update);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(COPIES - 3, shelf());
+        assertEquals(2, inventoryEngine.available(bookId));
+        borrowService.borrowBook(memberIds.get(1), bookId);
+        assertEquals(COPIES - 3, shelf());
+        assertEquals(1, inventoryEngine.available(bookId));
+    }
+
+    private int shelf() {
+        return jdbcTemplate.queryForObject("SELECT amount FROM book WHERE id = ?", Integer.class, bookId);
+    }
+
+    private int reserved() {
+        return jdbcTemplate.queryForObject("SELECT reserved FROM book WHERE id = ?", Integer.class, bookId);
+    }
+}
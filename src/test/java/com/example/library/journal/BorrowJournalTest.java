@@ -0,0 +1,256 @@
+package com.example.library.journal;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.exception.DeleteConstraintException;
+import com.example.library.exception.NotFoundException;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import com.example.library.service.MemberService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Borrowing through the write-behind journal, with entries applied only when a test asks for it.
+ */
+@TestPropertySource(properties = {
+        "borrow.journal.enabled=true",
+        "borrow.journal.batch.size=4",
+        "borrow.journal.flush.interval=3600000",
+        "member.borrow.limit=2"
+})
+class BorrowJournalTest extends PostgresIntegrationTest {
+
+    private static final int COPIES = 10;
+
+    @DynamicPropertySource
+    static void journalPath(DynamicPropertyRegistry registry) throws IOException {
+        String path = Files.createTempDirectory("borrow-journal").resolve("borrow.journal").toString();
+        registry.add("borrow.journal.path", () -> path);
+    }
+
+    @Autowired
+    private BorrowJournal borrowJournal;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private MemberService memberService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long bookId;
+    private final List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        bookId = saveBook("Checkout Rush", COPIES);
+        for (int i = 0; i < 40; i++) {
+            Member member = new Member();
+            member.setName("Journal Reader " + i);
+            member.setMembershipDate(LocalDate.now());
+            memberIds.add(memberRepository.save(member).getId());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowJournal.flush();
+        memberIds.clear();
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void borrowIsAcknowledgedBeforeItIsAppliedInABatch() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+        borrowService.borrowBook(memberIds.get(1), bookId);
+
+        assertEquals(0, borrowRepository.count());
+        assertEquals(COPIES - 2, bookService.getBookById(bookId).getAmount());
+
+        borrowJournal.flush();
+
+        assertEquals(2, borrowRepository.count());
+        assertEquals(COPIES - 2, shelf());
+        assertEquals(1, activeLoans(memberIds.get(0)));
+        assertEquals(COPIES - 2, bookService.getBookById(bookId).getAmount());
+    }
+
+    @Test
+    void checksCountEntriesNotYetApplied() {
+        Long member = memberIds.get(0);
+        Long scarceBook = saveBook("Single Copy", 1);
+
+        borrowService.borrowBook(member, scarceBook);
+        assertThrows(IllegalStateException.class, () -> borrowService.borrowBook(memberIds.get(1), scarceBook));
+        borrowService.borrowBook(member, bookId);
+        assertThrows(IllegalStateException.class, () -> borrowService.borrowBook(member, bookId));
+        assertThrows(NotFoundException.class, () -> borrowService.returnBook(memberIds.get(1), bookId));
+
+        borrowService.returnBook(member, scarceBook);
+        borrowService.borrowBook(memberIds.get(1), scarceBook);
+        borrowJournal.flush();
+
+        assertEquals(0, shelf(scarceBook));
+        assertEquals(1, activeLoans(member));
+        assertEquals(1, activeLoans(memberIds.get(1)));
+    }
+
+    @Test
+    void concurrentBorrowsNeverOversellWhileBatchesAreApplied() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicBoolean borrowing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (borrowing.get()) {
+                    borrowJournal.flush();
+                }
+                return null;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long memberId : memberIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        borrowService.borrowBook(memberId, bookId);
+                        borrowed.incrementAndGet();
+                    } catch (IllegalStateException ignored) {
+                        // out of stock
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            borrowing.set(false);
+            flusher.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        borrowJournal.flush();
+
+        assertEquals(COPIES, borrowed.get());
+        assertEquals(COPIES, borrowRepository.count());
+        assertEquals(0, shelf());
+    }
+
+    @Test
+    void replayAfterCrashAppliesExactlyTheEntriesNeverApplied() {
+        borrowService.borrowBook(memberIds.get(0), bookId);
+        borrowService.borrowBook(memberIds.get(1), bookId);
+        borrowJournal.flush();
+        // Acknowledged but not applied: a borrow and the return of an applied loan.
+        borrowService.borrowBook(memberIds.get(2), bookId);
+        borrowService.returnBook(memberIds.get(0), bookId);
+
+        borrowJournal.abandon();
+        borrowJournal.replay();
+        // A second crash right after the replay must not apply anything twice.
+        borrowJournal.abandon();
+        borrowJournal.replay();
+
+        assertEquals(3, borrowRepository.count());
+        assertEquals(COPIES - 2, shelf());
+        assertEquals(0, activeLoans(memberIds.get(0)));
+        assertEquals(1, activeLoans(memberIds.get(1)));
+        assertEquals(1, activeLoans(memberIds.get(2)));
+        assertTrue(borrowRepository.findByMemberIdAndReturnDateIsNull(memberIds.get(0)).isEmpty());
+    }
+
+    @Test
+    void noBorrowIsAcknowledgedWhileItsBookIsBeingDeleted() throws Exception {
+        Long doomed = saveBook("Withdrawn Title", 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                bookService.deleteBook(doomed);
+                Future<?> borrow = executor.submit(() -> borrowService.borrowBook(memberIds.get(0), doomed));
+                ExecutionException rejected = assertThrows(ExecutionException.class,
+                        () -> borrow.get(30, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, rejected.getCause());
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        borrowJournal.flush();
+
+        assertFalse(bookRepository.existsById(doomed));
+        assertEquals(0, borrowRepository.count());
+        assertEquals(0, activeLoans(memberIds.get(0)));
+    }
+
+    @Test
+    void failedDeleteReopensItsMemberToBorrows() {
+        Long member = memberIds.get(0);
+        borrowService.borrowBook(member, bookId);
+
+        assertThrows(DeleteConstraintException.class, () -> memberService.deleteMember(member));
+        borrowService.borrowBook(member, bookId);
+        borrowJournal.flush();
+
+        assertEquals(2, activeLoans(member));
+    }
+
+    private Long saveBook(String title, int amount) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Busy Author");
+        book.setAmount(amount);
+        return bookRepository.save(book).getId();
+    }
+
+    private int shelf() {
+        return shelf(bookId);
+    }
+
+    private int shelf(Long id) {
+        return jdbcTemplate.queryForObject("SELECT amount FROM book WHERE id = ?", Integer.class, id);
+    }
+
+    private int activeLoans(Long memberId) {
+        return jdbcTemplate.queryForObject("SELECT active_loans FROM member WHERE id = ?", Integer.class, memberId);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.library.metrics;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsIntegrationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    private Book book;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        book = new Book();
+        book.setTitle("Metered Title");
+        book.setAuthor("Metrics Author");
+        book.setAmount(1);
+        bookRepository.save(book);
+
+        member = new Member();
+        member.setName("Metrics Member");
+        member.setMembershipDate(LocalDate.now());
+        memberRepository.save(member);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void prometheusEndpointExposesRequestRepositoryHibernateAndDomainMetrics() throws Exception {
+        mockMvc.perform(post("/api/borrow/{memberId}/{bookId}", member.getId(), book.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/books/{id}", book.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket")))
+                .andExpect(content().string(containsString("hibernate_statements_per_request_count{method=\"GET\",uri=\"/api/books/{id}\"")))
+                .andExpect(content().string(containsString("hibernate_query_executions_total")))
+                .andExpect(content().string(containsString("library_borrows_total")))
+                .andExpect(content().string(containsString("library_borrow_rejections_total{reason=\"out_of_stock\"")));
+    }
+}
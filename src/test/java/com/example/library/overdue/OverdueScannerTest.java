@@ -0,0 +1,128 @@
+package com.example.library.overdue;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.OverdueLoanDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Borrow;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The overdue scanner, reading two loans per query, and the overdue listing.
+ */
+@RecordApplicationEvents
+@TestPropertySource(properties = {
+        "borrow.overdue.scan.chunk.size=2",
+        "borrow.overdue.scan.interval=3600000"
+})
+class OverdueScannerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private OverdueScanner overdueScanner;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationEvents events;
+
+    private Member member;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("UPDATE overdue_scan SET due_date = DATE '0001-01-01', loan_id = 0");
+        member = new Member();
+        member.setName("Late Reader");
+        member.setMembershipDate(LocalDate.now());
+        member = memberRepository.save(member);
+        book = new Book();
+        book.setTitle("Long Novel");
+        book.setAuthor("Prolific Author");
+        book.setAmount(10);
+        book = bookRepository.save(book);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void eachRunReportsOnlyLoansThatBecameOverdueSinceThePreviousOne() {
+        Long first = loan(-5, false);
+        Long second = loan(-3, false);
+        loan(-2, true);
+        Long third = loan(-1, false);
+        loan(3, false);
+
+        overdueScanner.scan();
+        assertEquals(List.of(first, second, third), reported());
+
+        overdueScanner.scan();
+        assertEquals(List.of(first, second, third), reported());
+
+        Long fourth = loan(-1, false);
+        overdueScanner.scan();
+        assertEquals(List.of(first, second, third, fourth), reported());
+    }
+
+    @Test
+    void overdueListingIsPagedInDueDateOrder() {
+        Long first = loan(-4, false);
+        loan(-4, true);
+        Long second = loan(-6, false);
+        Long third = loan(-1, false);
+        loan(0, false);
+
+        List<OverdueLoanDTO> page = borrowService.getOverdueLoans(null, 2);
+        assertEquals(List.of(second, first), page.stream().map(OverdueLoanDTO::getLoanId).toList());
+        assertEquals("Long Novel", page.get(0).getBookTitle());
+        assertEquals("Late Reader", page.get(0).getMemberName());
+
+        List<OverdueLoanDTO> next = borrowService.getOverdueLoans(first, 2);
+        assertEquals(List.of(third), next.stream().map(OverdueLoanDTO::getLoanId).toList());
+        assertTrue(borrowService.getOverdueLoans(third, 2).isEmpty());
+    }
+
+    private Long loan(int dueInDays, boolean returned) {
+        Borrow borrow = new Borrow();
+        borrow.setMember(member);
+        borrow.setBook(book);
+        borrow.setDueDate(LocalDate.now().plusDays(dueInDays));
+        borrow.setBorrowDate(borrow.getDueDate().minusDays(14));
+        borrow.setReturnDate(returned ? LocalDate.now() : null);
+        return borrowRepository.save(borrow).getId();
+    }
+
+    private List<Long> reported() {
+        return events.stream(OverdueLoansFound.class)
+                .flatMap(found -> found.loans().stream())
+                .map(OverdueLoanDTO::getLoanId)
+                .toList();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.library.repository;
+
+import com.example.library.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the hot borrow/book queries are planned against the indexes created by the
+ * migrations. Each plan is taken inside a transaction that seeds and analyzes a small loan
+ * history and is rolled back afterwards; sequential scans are disabled so the outcome does
+ * not depend on the tables being large.
+ */
+class BorrowQueryPlanTest extends PostgresIntegrationTest {
+
+    private static final String[] SEED = {
+            "INSERT INTO member (id, name, membership_date) "
+                    + "SELECT 900000 + g, 'Member ' || g, CURRENT_DATE FROM generate_series(1, 200) g",
+            "INSERT INTO book (id, title, author, amount) "
+                    + "SELECT 900000 + g, 'Title ' || g, 'Author ' || g, 5 FROM generate_series(1, 50) g",
+            "INSERT INTO borrow (id, member_id, book_id, borrow_date, due_date, return_date) "
+                    + "SELECT 900000 + g, 900001 + g % 200, 900001 + g % 50, CURRENT_DATE, CURRENT_DATE + 14 - g % 30, "
+                    + "CASE WHEN g % 10 = 0 THEN NULL ELSE CURRENT_DATE END FROM generate_series(1, 5000) g",
+            "INSERT INTO book_word (word) SELECT 'word' || g FROM generate_series(1, 50000) g",
+            "ANALYZE member",
+            "ANALYZE book",
+            "ANALYZE borrow",
+            "ANALYZE book_word"
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void openLoansByMemberUseMemberIndex() {
+        assertPlanUses("idx_borrow_open_member_book",
+                "SELECT * FROM borrow WHERE member_id = 900007 AND return_date IS NULL");
+    }
+
+    @Test
+    void returnLookupUsesMemberIndex() {
+        assertPlanUses("idx_borrow_open_member_book",
+                "SELECT MIN(id) FROM borrow WHERE member_id = 900007 AND book_id = 900007 AND return_date IS NULL");
+    }
+
+    @Test
+    void openLoansByBookUseBookIndex() {
+        assertPlanUses("idx_borrow_open_book",
+                "SELECT 1 FROM borrow WHERE book_id = 900007 AND return_date IS NULL LIMIT 1");
+    }
+
+    @Test
+    void borrowedTitleAggregateUsesPartialIndex() {
+        assertPlanUses("idx_borrow_open_",
+                "SELECT bk.title, COUNT(*) FROM borrow b JOIN book bk ON bk.id = b.book_id "
+                        + "WHERE b.return_date IS NULL GROUP BY bk.title");
+    }
+
+    @Test
+    void overdueScanWalksDueDateIndex() {
+        assertPlanUses("idx_borrow_open_due",
+                "SELECT id FROM borrow WHERE return_date IS NULL AND due_date < CURRENT_DATE "
+                        + "AND (due_date, id) > (DATE '0001-01-01', 0) ORDER BY due_date, id LIMIT 500");
+    }
+
+    @Test
+    void caseInsensitiveMemberNameLookupUsesFunctionalIndex() {
+        assertPlanUses("idx_member_name_upper",
+                "SELECT bk.title FROM borrow b JOIN member m ON m.id = b.member_id JOIN book bk ON bk.id = b.book_id "
+                        + "WHERE UPPER(m.name) = UPPER('member 7') AND b.return_date IS NULL");
+    }
+
+    @Test
+    void titleAndAuthorLookupUsesUniqueIndex() {
+        assertPlanUses("uk_book_title_author",
+                "SELECT * FROM book WHERE title = 'Dune' AND author = 'Frank Herbert'");
+    }
+
+    @Test
+    void tokenSearchUsesTextIndex() {
+        assertPlanUses("idx_book_search_vector",
+                "SELECT * FROM book WHERE search_vector @@ to_tsquery('simple', 'titl:* & 7:*')");
+    }
+
+    @Test
+    void typoCorrectionLooksUpSimilarWordsThroughTrigramIndex() {
+        assertPlanUses("Bitmap Index Scan on idx_book_word_trgm",
+                "SELECT word FROM book_word WHERE word % 'titel' ORDER BY similarity(word, 'titel') DESC LIMIT 1");
+    }
+
+    @Test
+    void duplicateTitleAndAuthorIsRejected() {
+        jdbcTemplate.update("INSERT INTO book (title, author, amount) VALUES ('Emma', 'Jane Austen', 1)");
+        try {
+            assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                    "INSERT INTO book (title, author, amount) VALUES ('Emma', 'Jane Austen', 2)"));
+        } finally {
+            jdbcTemplate.update("DELETE FROM book WHERE title = 'Emma' AND author = 'Jane Austen'");
+        }
+    }
+
+    private void assertPlanUses(String indexName, String sql) {
+        String plan = jdbcTemplate.execute((ConnectionCallback<String>) connection -> explain(connection, sql));
+        assertTrue(plan.contains(indexName), () -> "Expected plan to use " + indexName + " but was:\n" + plan);
+    }
+
+    private String explain(Connection connection, String sql) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String seed : SEED) {
+                statement.execute(seed);
+            }
+            statement.execute("SET LOCAL enable_seqscan = off");
+            try (ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+                StringBuilder lines = new StringBuilder();
+                while (rs.next()) {
+                    lines.append(rs.getString(1)).append('\n');
+                }
+                return lines.toString();
+            }
+        } finally {
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
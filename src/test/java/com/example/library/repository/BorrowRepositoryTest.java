@@ -0,0 +1,71 @@
+package com.example.library.repository;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Results of the borrow lookups against PostgreSQL; {@link BorrowQueryPlanTest} checks how they
+ * are planned.
+ */
+class BorrowRepositoryTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void memberNameLookupReturnsTitlesOfOpenLoans() {
+        Long reader = member("Lookup Member");
+        Long other = member("Other Member");
+        List<Long> books = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            books.add(book("Lookup Title " + i));
+            borrowService.borrowBook(reader, books.get(i));
+        }
+        borrowService.borrowBook(other, book("Other Title"));
+        borrowService.returnBook(reader, books.get(0));
+
+        List<String> titles = borrowRepository.findOpenLoanTitlesByMemberName("LOOKUP member");
+
+        assertEquals(List.of("Lookup Title 1", "Lookup Title 2"), titles);
+        assertTrue(borrowRepository.findOpenLoanTitlesByMemberName("Nobody").isEmpty());
+    }
+
+    private Long member(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setMembershipDate(LocalDate.now());
+        return memberRepository.save(member).getId();
+    }
+
+    private Long book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Lookup Author");
+        book.setAmount(1);
+        return bookRepository.save(book).getId();
+    }
+}
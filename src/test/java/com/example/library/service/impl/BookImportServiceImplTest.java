@@ -0,0 +1,98 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookImportResultDTO;
+import com.example.library.entity.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.service.BookImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookImportServiceImplTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Object originalChunkSize;
+
+    @BeforeEach
+    void useSmallChunks() {
+        originalChunkSize = ReflectionTestUtils.getField(importer(), "chunkSize");
+        ReflectionTestUtils.setField(importer(), "chunkSize", 2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        ReflectionTestUtils.setField(importer(), "chunkSize", originalChunkSize);
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void csvImportInsertsNewBooksAndMergesExistingOnes() throws IOException {
+        Book existing = new Book();
+        existing.setTitle("Alchemist");
+        existing.setAuthor("Paulo Coelho");
+        existing.setAmount(2);
+        bookRepository.save(existing);
+
+        String csv = """
+                title,author,amount
+                Alchemist,Paulo Coelho,3
+                "Dune, Part One",Frank Herbert,4
+                Emma,Jane Austen,1
+                Emma,Jane Austen,2
+                lowercase title,Jane Austen,1
+                Persuasion,Jane Austen,-1
+                Persuasion,Jane Austen
+                """;
+
+        BookImportResultDTO result = bookImportService.importCsv(stream(csv));
+
+        assertEquals(7, result.getProcessed());
+        assertEquals(4, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals(3, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).startsWith("Line 6:"));
+        assertEquals(5, bookRepository.findById(existing.getId()).orElseThrow().getAmount());
+        assertEquals(4, bookRepository.findByTitleAndAuthor("Dune, Part One", "Frank Herbert").orElseThrow().getAmount());
+        assertEquals(3, bookRepository.findByTitleAndAuthor("Emma", "Jane Austen").orElseThrow().getAmount());
+        assertEquals(3, bookRepository.count());
+    }
+
+    @Test
+    void ndjsonImportCommitsInChunks() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append("{\"title\":\"Volume ").append(i).append("\",\"author\":\"Leo Tolstoy\",\"amount\":1}\n");
+        }
+        ndjson.append("{not json}\n");
+
+        BookImportResultDTO result = bookImportService.importNdjson(stream(ndjson.toString()));
+
+        assertEquals(5, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(3, result.getChunks());
+        assertEquals(5, bookRepository.count());
+    }
+
+    private BookImportService importer() {
+        return AopTestUtils.getTargetObject(bookImportService);
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookServiceImplCacheTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long bookId;
+    private Long memberId;
+
+    @BeforeEach
+    void setUp() {
+        BookDTO book = new BookDTO();
+        book.setTitle("Cached Title");
+        book.setAuthor("Cache Author");
+        book.setAmount(3);
+        bookId = bookService.addBook(book).getId();
+
+        Member member = new Member();
+        member.setName("Cache Member");
+        member.setMembershipDate(LocalDate.now());
+        memberId = memberRepository.save(member).getId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromTheCache() {
+        double hitsBefore = cacheGets("hit");
+        bookService.getBookById(bookId);
+        // Changed behind the service's back, so only a database read would see it.
+        jdbcTemplate.update("UPDATE book SET amount = 99 WHERE id = ?", bookId);
+
+        assertEquals(3, bookService.getBookById(bookId).getAmount());
+        assertEquals(hitsBefore + 1, cacheGets("hit"));
+    }
+
+    @Test
+    void updateEvictsTheCachedBook() {
+        bookService.getBookById(bookId);
+        BookDTO update = new BookDTO();
+        update.setTitle("Renamed Title");
+        update.setAuthor("Cache Author");
+        update.setAmount(5);
+
+        bookService.updateBook(bookId, update);
+
+        BookDTO cached = bookService.getBookById(bookId);
+        assertEquals("Renamed Title", cached.getTitle());
+        assertEquals(5, cached.getAmount());
+    }
+
+    @Test
+    void borrowAndReturnEvictTheCachedBook() {
+        bookService.getBookById(bookId);
+
+        borrowService.borrowBook(memberId, bookId);
+        assertEquals(2, bookService.getBookById(bookId).getAmount());
+
+        borrowService.returnBooks(List.of(new BorrowRequestDTO(memberId, bookId)));
+        assertEquals(3, bookService.getBookById(bookId).getAmount());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CacheConfig.BOOKS)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
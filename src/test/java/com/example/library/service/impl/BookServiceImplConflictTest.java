@@ -0,0 +1,139 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Races book updates against borrows committed by another thread while the update's
+ * transaction is still open, i.e. after it read the book and before it commits.
+ */
+class BookServiceImplConflictTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @SpyBean
+    private BorrowStatsTracker borrowStatsTracker;
+
+    private String title;
+    private Long bookId;
+    private Long memberId;
+
+    @BeforeEach
+    void setUp() {
+        title = "Contended Title " + System.nanoTime();
+        bookId = bookService.addBook(book(title, 10)).getId();
+
+        Member member = new Member();
+        member.setName("Conflict Member");
+        member.setMembershipDate(LocalDate.now());
+        memberId = memberRepository.save(member).getId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void bulkBorrowStatementsIncrementVersions() {
+        long bookVersion = bookRepository.findById(bookId).orElseThrow().getVersion();
+        long memberVersion = memberRepository.findById(memberId).orElseThrow().getVersion();
+
+        borrowService.borrowBook(memberId, bookId);
+
+        assertEquals(bookVersion + 1, bookRepository.findById(bookId).orElseThrow().getVersion());
+        assertEquals(memberVersion + 1, memberRepository.findById(memberId).orElseThrow().getVersion());
+    }
+
+    @Test
+    void updateIsRetriedAfterLosingToAConcurrentBorrow() {
+        borrowDuringUpdate(1);
+        double conflictsBefore = count("library.optimistic.conflicts");
+
+        bookService.updateBook(bookId, book("Renamed " + title, 7));
+
+        Book book = bookRepository.findById(bookId).orElseThrow();
+        assertEquals("Renamed " + title, book.getTitle());
+        assertEquals(7, book.getAmount());
+        assertEquals(1, borrowRepository.count());
+        assertEquals(conflictsBefore + 1, count("library.optimistic.conflicts"));
+    }
+
+    @Test
+    void conflictIsRethrownWhenEveryAttemptLoses() {
+        borrowDuringUpdate(Integer.MAX_VALUE);
+        double conflictsBefore = count("library.optimistic.conflicts");
+        double exhaustedBefore = count("library.optimistic.retries.exhausted");
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> bookService.updateBook(bookId, book("Renamed " + title, 7)));
+
+        assertEquals(title, bookRepository.findById(bookId).orElseThrow().getTitle());
+        assertEquals(conflictsBefore + 4, count("library.optimistic.conflicts"));
+        assertEquals(exhaustedBefore + 1, count("library.optimistic.retries.exhausted"));
+    }
+
+    /**
+     * Commits a borrow of the book from another thread during each of the next {@code times}
+     * update attempts, so the update's version check fails when it commits.
+     */
+    private void borrowDuringUpdate(int times) {
+        AtomicInteger remaining = new AtomicInteger(times);
+        doAnswer(invocation -> {
+            if (remaining.getAndDecrement() > 0) {
+                CompletableFuture.runAsync(() -> borrowService.borrowBook(memberId, bookId)).join();
+            }
+            return invocation.callRealMethod();
+        }).when(borrowStatsTracker).renameBook(anyLong(), anyString());
+    }
+
+    private double count(String name) {
+        Counter counter = meterRegistry.find(name).tag("entity", "Book").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static BookDTO book(String title, int amount) {
+        BookDTO book = new BookDTO();
+        book.setTitle(title);
+        book.setAuthor("Conflict Author");
+        book.setAmount(amount);
+        return book;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.repository.BookRepository;
+import com.example.library.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "book.search.candidates=" + BookServiceImplSearchTest.CANDIDATES)
+class BookServiceImplSearchTest extends PostgresIntegrationTest {
+
+    static final int CANDIDATES = 5;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+
+    private BookDTO dune;
+
+    @BeforeEach
+    void setUp() {
+        dune = bookService.addBook(book("Dune", "Frank Herbert"));
+        bookService.addBook(book("Dune Messiah", "Frank Herbert"));
+        bookService.addBook(book("The Hobbit", "John Tolkien"));
+        bookService.addBook(book("Emma", "Jane Austen"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void prefixAndTokenMatches() {
+        assertEquals(List.of("Dune", "Dune Messiah"), titles("du"));
+        assertEquals(List.of("Dune", "Dune Messiah"), titles("herbert"));
+        assertEquals("Dune Messiah", titles("dune mess").get(0));
+    }
+
+    @Test
+    void fuzzyMatchToleratesTypos() {
+        assertEquals(List.of("The Hobbit"), titles("tolkein"));
+        assertEquals(List.of("Emma"), titles("jane ausetn"));
+        assertEquals(List.of("The Hobbit"), titles("hobit tolkien"));
+    }
+
+    @Test
+    void resultsArePaginated() {
+        assertEquals(List.of("Dune"), titles(bookService.searchBooks("frank", 0, 1)));
+        assertEquals(List.of("Dune Messiah"), titles(bookService.searchBooks("frank", 1, 1)));
+    }
+
+    @Test
+    void pagesPastTheCandidatesAreRejected() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES + 3; i++) {
+            ids.add(bookService.addBook(book("Saga Volume " + i, "Serial Author")).getId());
+        }
+        // The updated row moves behind the others on disk; it is still among the first matches by id.
+        BookDTO first = bookService.getBookById(ids.get(0));
+        first.setAmount(2);
+        bookService.updateBook(first.getId(), first);
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page * 2 < CANDIDATES; page++) {
+            bookService.searchBooks("saga", page, 2).forEach(book -> paged.add(book.getId()));
+        }
+
+        assertEquals(ids.subList(0, CANDIDATES), paged);
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooks("saga", CANDIDATES / 2 + 1, 2));
+    }
+
+    @Test
+    void indexFollowsUpdatesAndDeletes() {
+        bookService.updateBook(dune.getId(), book("Children Of Dune", "Frank Herbert"));
+        assertTrue(titles("children").contains("Children Of Dune"));
+
+        bookService.deleteBook(dune.getId());
+        assertTrue(titles("children").isEmpty());
+    }
+
+    private List<String> titles(String query) {
+        return titles(bookService.searchBooks(query, 0, 20));
+    }
+
+    private List<String> titles(List<BookDTO> books) {
+        return books.stream().map(BookDTO::getTitle).toList();
+    }
+
+    private BookDTO book(String title, String author) {
+        BookDTO dto = new BookDTO();
+        dto.setTitle(title);
+        dto.setAuthor(author);
+        dto.setAmount(1);
+        return dto;
+    }
+}
@@ -1,15 +1,24 @@
 package com.example.library.service.impl;
 
+import com.example.library.changes.ChangeOutbox;
 import com.example.library.dto.BookDTO;
 import com.example.library.entity.Book;
 import com.example.library.exception.DeleteConstraintException;
 import com.example.library.exception.NotFoundException;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
 import com.example.library.repository.BookRepository;
+import com.example.library.repository.BookSummary;
 import com.example.library.repository.BorrowRepository;
+import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
 import com.example.library.validation.BookDTOValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 import java.util.Optional;
@@ -29,7 +38,13 @@ class BookServiceImplTest {
         bookRepository = mock(BookRepository.class);
         borrowRepository = mock(BorrowRepository.class);
         validator = mock(BookDTOValidator.class);
-        bookService = new BookServiceImpl(bookRepository, borrowRepository, validator);
+        bookService = new BookServiceImpl(bookRepository, borrowRepository, validator, mock(BorrowStatsTracker.class),
+                mock(InventoryEngine.class), mock(BorrowJournal.class), mock(ChangeOutbox.class),
+                mock(ApplicationEventPublisher.class), mock(BorrowService.class));
+        ReflectionTestUtils.setField(bookService, "maxPageSize", 100);
+        ReflectionTestUtils.setField(bookService, "fuzzyThreshold", "0.25");
+        ReflectionTestUtils.setField(bookService, "searchCandidates", 1000);
+        ReflectionTestUtils.setField(bookService, "fuzzyCandidates", 40);
     }
 
     @Test
@@ -128,6 +143,7 @@ class BookServiceImplTest {
 
         bookService.deleteBook(3L);
 
+        verify(borrowRepository).deleteByBookId(3L);
         verify(bookRepository).delete(book);
     }
 
@@ -151,46 +167,78 @@ class BookServiceImplTest {
 
     @Test
     void testListBooks() {
-        Book b1 = new Book();
-        b1.setId(1L);
-        b1.setTitle("Book One");
-        b1.setAuthor("Author A");
-        b1.setAmount(2);
+        BookSummary b1 = new BookSummary(1L, "Book One", "Author A", 2, 0);
+        BookSummary b2 = new BookSummary(2L, "Book Two", "Author B", 5, 0);
 
-        Book b2 = new Book();
-        b2.setId(2L);
-        b2.setTitle("Book Two");
-        b2.setAuthor("Author B");
-        b2.setAmount(5);
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(List.of(b1, b2));
 
-        when(bookRepository.findAll()).thenReturn(List.of(b1, b2));
-
-        List<BookDTO> result = bookService.listBooks();
+        List<BookDTO> result = bookService.listBooks(null, 2);
 
         assertEquals(2, result.size());
         assertEquals("Book One", result.get(0).getTitle());
         assertEquals("Book Two", result.get(1).getTitle());
     }
 
+    @Test
+    void testListBooks_PageSizeCappedAtLimit() {
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(100))).thenReturn(List.of());
+
+        List<BookDTO> result = bookService.listBooks(10L, 5000);
+
+        assertTrue(result.isEmpty());
+        verify(bookRepository).findByIdGreaterThanOrderByIdAsc(10L, Limit.of(100));
+    }
+
+    @Test
+    void testListBooks_InvalidPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> bookService.listBooks(null, 0));
+    }
+
+    @Test
+    void testSearchBooks_MatchesLastTokenAsPrefix() {
+        Book dune = new Book();
+        dune.setTitle("Dune");
+        when(bookRepository.searchByTokens("dune & herb:*", "dune", 1000, 20, 40L)).thenReturn(List.of(dune));
+
+        List<BookDTO> result = bookService.searchBooks("  Dune, Herb ", 2, 20);
+
+        assertEquals("Dune", result.get(0).getTitle());
+        verify(bookRepository, never()).findClosestWords(anyString());
+    }
+
+    @Test
+    void testSearchBooks_CorrectsTyposWhenNothingMatchesAsTyped() {
+        when(bookRepository.searchByTokens("hobbit & tolkein:*", "hobbit", 1000, 20, 0L)).thenReturn(List.of());
+        when(bookRepository.findClosestWords("hobbit tolkein")).thenReturn(List.of("hobbit", "tolkien"));
+
+        bookService.searchBooks("Hobbit Tolkein", 0, 20);
+
+        verify(bookRepository).prepareFuzzySearch("0.25");
+        verify(bookRepository).searchByTokens("hobbit & tolkien:*", "hobbit", 40, 20, 0L);
+    }
+
+    @Test
+    void testSearchBooks_QueryTooShort() {
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooks("a", 0, 20));
+        verifyNoInteractions(bookRepository);
+    }
+
     @Test
     void testGetBookById_Success() {
-        Book book = new Book();
-        book.setId(1L);
-        book.setTitle("Test Book");
-        book.setAuthor("Tester");
-        book.setAmount(1);
+        BookSummary book = new BookSummary(1L, "Test Book", "Tester", 1, 3);
 
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        when(bookRepository.findSummaryById(1L)).thenReturn(Optional.of(book));
 
         BookDTO result = bookService.getBookById(1L);
 
         assertEquals("Test Book", result.getTitle());
         assertEquals("Tester", result.getAuthor());
+        assertEquals(3, result.getVersion());
     }
 
     @Test
     void testGetBookById_NotFound() {
-        when(bookRepository.findById(404L)).thenReturn(Optional.empty());
+        when(bookRepository.findSummaryById(404L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> bookService.getBookById(404L));
     }
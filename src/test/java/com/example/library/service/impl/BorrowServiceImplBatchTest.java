@@ -0,0 +1,105 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BorrowServiceImplBatchTest extends PostgresIntegrationTest {
+
+    private static final int ITEMS = 200;
+
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Value("${member.borrow.limit}")
+    private int borrowLimit;
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void batchBorrowAndReturnAppliesEveryItem() {
+        List<BorrowRequestDTO> requests = createRequests("Batch");
+
+        List<BorrowResultDTO> borrowed = borrowService.borrowBooks(requests);
+
+        assertTrue(borrowed.stream().allMatch(BorrowResultDTO::isSuccess));
+        assertEquals(ITEMS, borrowRepository.count());
+        assertTrue(bookRepository.findAll().stream().allMatch(book -> book.getAmount() == 0));
+        assertTrue(memberRepository.findAll().stream().allMatch(member -> member.getActiveLoans() == borrowLimit));
+
+        List<BorrowResultDTO> returned = borrowService.returnBooks(requests);
+
+        assertTrue(returned.stream().allMatch(BorrowResultDTO::isSuccess));
+        assertTrue(bookRepository.findAll().stream().allMatch(book -> book.getAmount() == 1));
+        assertTrue(memberRepository.findAll().stream().allMatch(member -> member.getActiveLoans() == 0));
+    }
+
+    @Test
+    void rejectedItemsDoNotAffectTheRestOfTheBatch() {
+        List<BorrowRequestDTO> requests = new ArrayList<>(createRequests("Mixed"));
+        BorrowRequestDTO first = requests.get(0);
+        requests.add(new BorrowRequestDTO(first.getMemberId(), first.getBookId()));
+        requests.add(new BorrowRequestDTO(first.getMemberId(), Long.MAX_VALUE));
+
+        List<BorrowResultDTO> results = borrowService.borrowBooks(requests);
+
+        assertEquals(ITEMS, results.stream().filter(BorrowResultDTO::isSuccess).count());
+        assertFalse(results.get(ITEMS).isSuccess());
+        assertFalse(results.get(ITEMS + 1).isSuccess());
+        assertEquals(borrowLimit, memberRepository.findById(first.getMemberId()).orElseThrow().getActiveLoans());
+    }
+
+    private List<BorrowRequestDTO> createRequests(String prefix) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ITEMS / borrowLimit; i++) {
+            Member member = new Member();
+            member.setName(prefix + " Member " + i);
+            member.setMembershipDate(LocalDate.now());
+            members.add(member);
+        }
+        memberRepository.saveAll(members);
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Book book = new Book();
+            book.setTitle(prefix + " Title " + i);
+            book.setAuthor("Batch Author");
+            book.setAmount(1);
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+
+        List<BorrowRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            requests.add(new BorrowRequestDTO(members.get(i % members.size()).getId(), books.get(i).getId()));
+        }
+        return requests;
+    }
+}
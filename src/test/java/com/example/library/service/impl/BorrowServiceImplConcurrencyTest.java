@@ -0,0 +1,229 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.exception.NotFoundException;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BorrowServiceImplConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int COPIES = 5;
+    private static final int BORROWERS = 40;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Value("${member.borrow.limit}")
+    private int borrowLimit;
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void concurrentBorrowsNeverOversell() throws Exception {
+        Book book = new Book();
+        book.setTitle("Project Hail Mary");
+        book.setAuthor("Andy Weir");
+        book.setAmount(COPIES);
+        Long bookId = bookRepository.save(book).getId();
+
+        List<Long> memberIds = new ArrayList<>();
+        for (int i = 0; i < BORROWERS; i++) {
+            Member member = new Member();
+            member.setName("Reader " + i);
+            member.setMembershipDate(LocalDate.now());
+            memberIds.add(memberRepository.save(member).getId());
+        }
+
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Runnable> borrows = new ArrayList<>();
+        for (Long memberId : memberIds) {
+            borrows.add(() -> borrowService.borrowBook(memberId, bookId));
+        }
+        runConcurrently(borrows, borrowed, rejected);
+
+        assertEquals(COPIES, borrowed.get());
+        assertEquals(BORROWERS - COPIES, rejected.get());
+        assertEquals(0, bookRepository.findById(bookId).orElseThrow().getAmount());
+        assertEquals(COPIES, borrowRepository.findAll().stream()
+                .filter(b -> b.getBook().getId().equals(bookId) && b.getReturnDate() == null)
+                .count());
+    }
+
+    @Test
+    void concurrentBorrowsNeverExceedMemberLimit() throws Exception {
+        Member member = new Member();
+        member.setName("Eager Reader");
+        member.setMembershipDate(LocalDate.now());
+        Long memberId = memberRepository.save(member).getId();
+
+        List<Runnable> borrows = new ArrayList<>();
+        for (int i = 0; i < borrowLimit * 3; i++) {
+            Book book = new Book();
+            book.setTitle("Volume " + i);
+            book.setAuthor("Serial Author");
+            book.setAmount(1);
+            Long bookId = bookRepository.save(book).getId();
+            borrows.add(() -> borrowService.borrowBook(memberId, bookId));
+        }
+
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(borrows, borrowed, rejected);
+
+        assertEquals(borrowLimit, borrowed.get());
+        assertEquals(borrowLimit * 2, rejected.get());
+        assertEquals(borrowLimit, memberRepository.findById(memberId).orElseThrow().getActiveLoans());
+        assertEquals(borrowLimit, borrowRepository.findByMemberIdAndReturnDateIsNull(memberId).size());
+    }
+
+    @Test
+    void concurrentReturnsOfOneLoanRestockOnce() throws Exception {
+        Book book = new Book();
+        book.setTitle("The Left Hand of Darkness");
+        book.setAuthor("Ursula Guin");
+        book.setAmount(1);
+        Long bookId = bookRepository.save(book).getId();
+
+        Member member = new Member();
+        member.setName("Returning Reader");
+        member.setMembershipDate(LocalDate.now());
+        Long memberId = memberRepository.save(member).getId();
+
+        borrowService.borrowBook(memberId, bookId);
+
+        List<Runnable> returns = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            returns.add(() -> borrowService.returnBook(memberId, bookId));
+        }
+        AtomicInteger returned = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(returns, returned, rejected);
+
+        assertEquals(1, returned.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, bookRepository.findById(bookId).orElseThrow().getAmount());
+        assertEquals(0, memberRepository.findById(memberId).orElseThrow().getActiveLoans());
+    }
+
+    @Test
+    void overlappingBatchesInOppositeOrdersDoNotDeadlock() throws Exception {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("Shared Volume " + i);
+            book.setAuthor("Batch Author");
+            book.setAmount(6);
+            bookIds.add(bookRepository.save(book).getId());
+        }
+        // Each batch lends every book to three members of its own; the second lists the loans in
+        // the opposite order, so both batches update the same book rows in opposite orders.
+        List<BorrowRequestDTO> first = batchOfEveryBook("First Batch Reader", bookIds);
+        List<BorrowRequestDTO> second = batchOfEveryBook("Second Batch Reader", bookIds);
+        Collections.reverse(second);
+
+        for (int round = 0; round < 10; round++) {
+            assertBothSucceed(() -> borrowService.borrowBooks(first), () -> borrowService.borrowBooks(second));
+            assertBothSucceed(() -> borrowService.returnBooks(first), () -> borrowService.returnBooks(second));
+        }
+        assertTrue(bookRepository.findAllById(bookIds).stream().allMatch(book -> book.getAmount() == 6));
+    }
+
+    private List<BorrowRequestDTO> batchOfEveryBook(String name, List<Long> bookIds) {
+        List<BorrowRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Member member = new Member();
+            member.setName(name + " " + i);
+            member.setMembershipDate(LocalDate.now());
+            Long memberId = memberRepository.save(member).getId();
+            for (Long bookId : bookIds) {
+                requests.add(new BorrowRequestDTO(memberId, bookId));
+            }
+        }
+        return requests;
+    }
+
+    private void assertBothSucceed(Callable<List<BorrowResultDTO>> first, Callable<List<BorrowResultDTO>> second)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<BorrowResultDTO>>> futures = new ArrayList<>();
+            for (Callable<List<BorrowResultDTO>> batch : List.of(first, second)) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return batch.call();
+                }));
+            }
+            start.countDown();
+            for (Future<List<BorrowResultDTO>> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS).stream().allMatch(BorrowResultDTO::isSuccess));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runConcurrently(List<Runnable> tasks, AtomicInteger succeeded, AtomicInteger rejected)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        task.run();
+                        succeeded.incrementAndGet();
+                    } catch (IllegalStateException | NotFoundException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
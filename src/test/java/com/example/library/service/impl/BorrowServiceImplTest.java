@@ -1,19 +1,33 @@
 package com.example.library.service.impl;
 
+import com.example.library.changes.ChangeOutbox;
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.BorrowRequestDTO;
+import com.example.library.dto.BorrowResultDTO;
 import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.dto.HoldDTO;
 import com.example.library.entity.Book;
 import com.example.library.entity.Borrow;
 import com.example.library.entity.Member;
 import com.example.library.exception.NotFoundException;
+import com.example.library.holds.HoldQueue;
+import com.example.library.inventory.InventoryEngine;
+import com.example.library.journal.BorrowJournal;
+import com.example.library.metrics.LibraryMetrics;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.BorrowRepository;
 import com.example.library.repository.MemberRepository;
 import com.example.library.service.BorrowService;
+import com.example.library.stats.BorrowStatsTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -33,33 +47,60 @@ class BorrowServiceImplTest {
     private BookRepository bookRepository;
     @Mock
     private MemberRepository memberRepository;
+    @Mock
+    private CacheManager cacheManager;
+    @Mock
+    private Cache bookCache;
+    @Mock
+    private BorrowStatsTracker borrowStatsTracker;
+    @Mock
+    private LibraryMetrics libraryMetrics;
+    @Mock
+    private InventoryEngine inventoryEngine;
+    @Mock
+    private BorrowJournal borrowJournal;
+    @Mock
+    private ChangeOutbox changeOutbox;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private HoldQueue holdQueue;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(cacheManager.getCache(CacheConfig.BOOKS)).thenReturn(bookCache);
         ReflectionTestUtils.setField(borrowService, "maxAllowedBooks", 2);
+        ReflectionTestUtils.setField(borrowService, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(borrowService, "loanDays", 14);
     }
 
     @Test
     void borrowBook_success() {
         Member member = new Member();
         Book book = new Book();
-        book.setAmount(3);
+        book.setId(2L);
 
-        when(memberRepository.findById(1L)).thenReturn(Optional.of(member));
-        when(bookRepository.findById(2L)).thenReturn(Optional.of(book));
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L)).thenReturn(emptyList());
+        when(memberRepository.incrementActiveLoans(1L, 2)).thenReturn(1);
+        when(memberRepository.getReferenceById(1L)).thenReturn(member);
+        when(bookRepository.decrementAmount(2L)).thenReturn(1);
+        when(bookRepository.getReferenceById(2L)).thenReturn(book);
 
         borrowService.borrowBook(1L, 2L);
 
-        verify(borrowRepository).save(any(Borrow.class));
-        verify(bookRepository).save(book);
-        assertEquals(2, book.getAmount());
+        ArgumentCaptor<Borrow> captor = ArgumentCaptor.forClass(Borrow.class);
+        verify(borrowRepository).save(captor.capture());
+        assertSame(member, captor.getValue().getMember());
+        assertSame(book, captor.getValue().getBook());
+        assertEquals(LocalDate.now(), captor.getValue().getBorrowDate());
+        assertEquals(LocalDate.now().plusDays(14), captor.getValue().getDueDate());
+        verify(bookRepository, never()).save(any(Book.class));
     }
 
     @Test
     void borrowBook_memberNotFound() {
-        when(memberRepository.findById(1L)).thenReturn(Optional.empty());
+        when(memberRepository.incrementActiveLoans(1L, 2)).thenReturn(0);
+        when(memberRepository.existsById(1L)).thenReturn(false);
 
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> borrowService.borrowBook(1L, 2L));
@@ -68,8 +109,9 @@ class BorrowServiceImplTest {
 
     @Test
     void borrowBook_bookNotFound() {
-        when(memberRepository.findById(1L)).thenReturn(Optional.of(new Member()));
-        when(bookRepository.findById(2L)).thenReturn(Optional.empty());
+        when(memberRepository.incrementActiveLoans(1L, 2)).thenReturn(1);
+        when(bookRepository.decrementAmount(2L)).thenReturn(0);
+        when(bookRepository.existsById(2L)).thenReturn(false);
 
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> borrowService.borrowBook(1L, 2L));
@@ -78,78 +120,190 @@ class BorrowServiceImplTest {
 
     @Test
     void borrowBook_limitExceeded() {
-        when(memberRepository.findById(1L)).thenReturn(Optional.of(new Member()));
-        when(bookRepository.findById(2L)).thenReturn(Optional.of(new Book()));
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L))
-                .thenReturn(List.of(new Borrow(), new Borrow()));
+        when(memberRepository.incrementActiveLoans(1L, 2)).thenReturn(0);
+        when(memberRepository.existsById(1L)).thenReturn(true);
 
         IllegalStateException exception = assertThrows(IllegalStateException.class,
                 () -> borrowService.borrowBook(1L, 2L));
         assertTrue(exception.getMessage().contains("maximum allowed"));
+        verify(bookRepository, never()).decrementAmount(anyLong());
     }
 
     @Test
     void borrowBook_bookUnavailable() {
-        Book book = new Book();
-        book.setAmount(0);
-        when(memberRepository.findById(1L)).thenReturn(Optional.of(new Member()));
-        when(bookRepository.findById(2L)).thenReturn(Optional.of(book));
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L)).thenReturn(emptyList());
+        when(memberRepository.incrementActiveLoans(1L, 2)).thenReturn(1);
+        when(bookRepository.decrementAmount(2L)).thenReturn(0);
+        when(bookRepository.existsById(2L)).thenReturn(true);
 
         IllegalStateException exception = assertThrows(IllegalStateException.class,
                 () -> borrowService.borrowBook(1L, 2L));
         assertTrue(exception.getMessage().contains("unavailable"));
+        verify(borrowRepository, never()).save(any(Borrow.class));
+        verify(memberRepository).decrementActiveLoans(1L);
     }
 
     @Test
     void returnBook_success() {
-        Book book = new Book();
-        book.setId(2L);
-        book.setAmount(1);
-
-        Borrow borrow = new Borrow();
-        borrow.setBook(book);
-
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L)).thenReturn(List.of(borrow));
+        when(borrowRepository.markReturned(1L, 2L, LocalDate.now())).thenReturn(1);
 
         borrowService.returnBook(1L, 2L);
 
-        verify(borrowRepository).save(borrow);
-        verify(bookRepository).save(book);
-        assertEquals(2, book.getAmount());
-        assertEquals(LocalDate.now(), borrow.getReturnDate());
+        verify(bookRepository).incrementAmount(2L);
+        verify(memberRepository).decrementActiveLoans(1L);
     }
 
 
     @Test
     void returnBook_notBorrowed() {
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L)).thenReturn(emptyList());
+        when(borrowRepository.markReturned(1L, 2L, LocalDate.now())).thenReturn(0);
 
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> borrowService.returnBook(1L, 2L));
         assertTrue(exception.getMessage().contains("not currently borrowed"));
+        verify(bookRepository, never()).incrementAmount(anyLong());
+        verify(memberRepository, never()).decrementActiveLoans(anyLong());
     }
 
     @Test
-    void getBorrowedBooksByMemberName_success() {
-        Member member = new Member();
-        member.setId(1L);
-        Book book = new Book();
-        book.setTitle("Clean Code");
-        Borrow borrow = new Borrow();
-        borrow.setBook(book);
+    void returnBook_lendsCopyToOldestHold() {
+        when(borrowRepository.markReturned(1L, 2L, LocalDate.now())).thenReturn(1);
+        when(holdQueue.next(2L, 0L)).thenReturn(Optional.of(hold(7L, 5L)));
+        when(memberRepository.incrementActiveLoans(5L, 2)).thenReturn(1);
+
+        borrowService.returnBook(1L, 2L);
+
+        verify(holdQueue).remove(7L);
+        ArgumentCaptor<Borrow> loan = ArgumentCaptor.forClass(Borrow.class);
+        verify(borrowRepository).save(loan.capture());
+        assertEquals(LocalDate.now().plusDays(14), loan.getValue().getDueDate());
+        verify(memberRepository).getReferenceById(5L);
+        verify(bookRepository, never()).incrementAmount(anyLong());
+        verify(memberRepository).decrementActiveLoans(1L);
+    }
+
+    @Test
+    void returnBook_passesOverHoldOfMemberAtLimit() {
+        when(borrowRepository.markReturned(1L, 2L, LocalDate.now())).thenReturn(1);
+        when(holdQueue.next(2L, 0L)).thenReturn(Optional.of(hold(7L, 5L)));
+        when(holdQueue.next(2L, 7L)).thenReturn(Optional.of(hold(8L, 6L)));
+        when(memberRepository.incrementActiveLoans(6L, 2)).thenReturn(1);
+
+        borrowService.returnBook(1L, 2L);
+
+        verify(holdQueue, never()).remove(7L);
+        verify(holdQueue).remove(8L);
+        verify(memberRepository).getReferenceById(6L);
+        verify(bookRepository, never()).incrementAmount(anyLong());
+    }
+
+    @Test
+    void returnBook_keepsHoldsQueuedWhenEveryMemberIsAtLimit() {
+        when(borrowRepository.markReturned(1L, 2L, LocalDate.now())).thenReturn(1);
+        when(holdQueue.next(2L, 0L)).thenReturn(Optional.of(hold(7L, 5L)));
+
+        borrowService.returnBook(1L, 2L);
 
-        when(memberRepository.findByNameIgnoreCase("Alice")).thenReturn(Optional.of(member));
-        when(borrowRepository.findByMemberIdAndReturnDateIsNull(1L)).thenReturn(List.of(borrow));
+        verify(holdQueue, never()).remove(anyLong());
+        verify(borrowRepository, never()).save(any());
+        verify(bookRepository).incrementAmount(2L);
+        verify(bookRepository, never()).decrementAmount(anyLong());
+    }
+
+    @Test
+    void placeHold_rejectedWhileCopiesAreAvailable() {
+        when(memberRepository.existsById(1L)).thenReturn(true);
+        when(bookRepository.lockAmount(2L)).thenReturn(Optional.of(1));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> borrowService.placeHold(1L, 2L));
+        assertTrue(exception.getMessage().contains("available"));
+        verify(holdQueue, never()).add(anyLong(), anyLong());
+    }
+
+    @Test
+    void placeHold_notWithTheInventoryEngine() {
+        when(inventoryEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> borrowService.placeHold(1L, 2L));
+        verify(bookRepository, never()).lockAmount(anyLong());
+    }
+
+    @Test
+    void borrowBooks_reportsPerItemResults() {
+        when(memberRepository.incrementActiveLoans(anyLong(), eq(2))).thenReturn(1);
+        when(bookRepository.decrementAmount(2L)).thenReturn(1);
+        when(bookRepository.decrementAmount(3L)).thenReturn(0);
+        when(bookRepository.existsById(3L)).thenReturn(true);
+
+        List<BorrowResultDTO> results = borrowService.borrowBooks(List.of(
+                new BorrowRequestDTO(1L, 2L),
+                new BorrowRequestDTO(1L, 3L),
+                new BorrowRequestDTO(null, 2L)));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError().contains("unavailable"));
+        assertFalse(results.get(2).isSuccess());
+        ArgumentCaptor<List<Borrow>> captor = ArgumentCaptor.forClass(List.class);
+        verify(borrowRepository).saveAll(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        verify(memberRepository, times(1)).decrementActiveLoans(1L);
+        verify(bookCache).evict(2L);
+        verifyNoMoreInteractions(bookCache);
+    }
+
+    @Test
+    void borrowBooks_tooManyItems() {
+        List<BorrowRequestDTO> requests = List.of(
+                new BorrowRequestDTO(1L, 1L), new BorrowRequestDTO(1L, 2L),
+                new BorrowRequestDTO(1L, 3L), new BorrowRequestDTO(1L, 4L));
+
+        assertThrows(IllegalArgumentException.class, () -> borrowService.borrowBooks(requests));
+        verifyNoInteractions(memberRepository, bookRepository, borrowRepository);
+    }
+
+    @Test
+    void returnBooks_reportsPerItemResults() {
+        LocalDate today = LocalDate.now();
+        when(borrowRepository.markReturned(1L, 2L, today)).thenReturn(1);
+        when(borrowRepository.markReturned(1L, 3L, today)).thenReturn(0);
+
+        List<BorrowResultDTO> results = borrowService.returnBooks(List.of(
+                new BorrowRequestDTO(1L, 2L),
+                new BorrowRequestDTO(1L, 3L)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError().contains("not currently borrowed"));
+        verify(bookRepository).incrementAmount(2L);
+        verify(bookRepository, never()).incrementAmount(3L);
+        verify(bookCache).evict(2L);
+        verify(bookCache, never()).evict(3L);
+    }
+
+    @Test
+    void getBorrowedBooksByMemberName_success() {
+        when(borrowRepository.findOpenLoanTitlesByMemberName("Alice")).thenReturn(List.of("Clean Code"));
 
         List<String> titles = borrowService.getBorrowedBooksByMemberName("Alice");
 
         assertEquals(List.of("Clean Code"), titles);
+        verify(memberRepository, never()).existsByNameIgnoreCase(anyString());
+    }
+
+    @Test
+    void getBorrowedBooksByMemberName_noOpenLoans() {
+        when(borrowRepository.findOpenLoanTitlesByMemberName("Alice")).thenReturn(emptyList());
+        when(memberRepository.existsByNameIgnoreCase("Alice")).thenReturn(true);
+
+        assertEquals(emptyList(), borrowService.getBorrowedBooksByMemberName("Alice"));
     }
 
     @Test
     void getBorrowedBooksByMemberName_notFound() {
-        when(memberRepository.findByNameIgnoreCase("Alice")).thenReturn(Optional.empty());
+        when(borrowRepository.findOpenLoanTitlesByMemberName("Alice")).thenReturn(emptyList());
+        when(memberRepository.existsByNameIgnoreCase("Alice")).thenReturn(false);
 
         assertThrows(NotFoundException.class,
                 () -> borrowService.getBorrowedBooksByMemberName("Alice"));
@@ -164,4 +318,18 @@ class BorrowServiceImplTest {
 
         assertEquals(List.of("Book A", "Book B"), titles);
     }
+
+    @Test
+    void getBorrowedBookStats_answersFromTrackerOnceSeeded() {
+        List<BorrowedBookStatDTO> stats = List.of(new BorrowedBookStatDTO("Book A", 2L));
+        when(borrowStatsTracker.isSeeded()).thenReturn(true);
+        when(borrowStatsTracker.getStats()).thenReturn(stats);
+
+        assertEquals(stats, borrowService.getBorrowedBookStats());
+        verifyNoInteractions(borrowRepository);
+    }
+
+    private static HoldDTO hold(Long id, Long memberId) {
+        return new HoldDTO(id, memberId, 2L, Instant.now());
+    }
 }
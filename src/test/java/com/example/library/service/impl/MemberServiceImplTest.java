@@ -1,14 +1,19 @@
 package com.example.library.service.impl;
 
+import com.example.library.changes.ChangeOutbox;
 import com.example.library.dto.MemberDTO;
 import com.example.library.entity.Member;
 import com.example.library.exception.DeleteConstraintException;
 import com.example.library.exception.NotFoundException;
+import com.example.library.journal.BorrowJournal;
 import com.example.library.repository.BorrowRepository;
 import com.example.library.repository.MemberRepository;
+import com.example.library.repository.MemberSummary;
 import com.example.library.validation.MemberDTOValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -29,24 +34,19 @@ class MemberServiceImplTest {
         memberRepository = mock(MemberRepository.class);
         validator = mock(MemberDTOValidator.class);
         borrowRepository = mock(BorrowRepository.class);
-        memberService = new MemberServiceImpl(memberRepository, validator, borrowRepository);
+        memberService = new MemberServiceImpl(memberRepository, validator, borrowRepository,
+                mock(BorrowJournal.class), mock(ChangeOutbox.class));
+        ReflectionTestUtils.setField(memberService, "maxPageSize", 100);
     }
 
     @Test
     void testGetAllMembers() {
-        Member m1 = new Member();
-        m1.setId(1L);
-        m1.setName("John Doe");
-        m1.setMembershipDate(LocalDate.of(2022, 1, 1));
+        MemberSummary m1 = new MemberSummary(1L, "John Doe", LocalDate.of(2022, 1, 1), 0);
+        MemberSummary m2 = new MemberSummary(2L, "Jane Smith", LocalDate.of(2023, 3, 5), 0);
 
-        Member m2 = new Member();
-        m2.setId(2L);
-        m2.setName("Jane Smith");
-        m2.setMembershipDate(LocalDate.of(2023, 3, 5));
+        when(memberRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(50))).thenReturn(List.of(m1, m2));
 
-        when(memberRepository.findAll()).thenReturn(List.of(m1, m2));
-
-        List<MemberDTO> result = memberService.getAllMembers();
+        List<MemberDTO> result = memberService.getAllMembers(null, 50);
 
         assertEquals(2, result.size());
         assertEquals("John Doe", result.get(0).getName());
@@ -55,22 +55,20 @@ class MemberServiceImplTest {
 
     @Test
     void testGetMemberById_Success() {
-        Member member = new Member();
-        member.setId(1L);
-        member.setName("Alice");
-        member.setMembershipDate(LocalDate.of(2021, 6, 15));
+        MemberSummary member = new MemberSummary(1L, "Alice", LocalDate.of(2021, 6, 15), 2);
 
-        when(memberRepository.findById(1L)).thenReturn(Optional.of(member));
+        when(memberRepository.findSummaryById(1L)).thenReturn(Optional.of(member));
 
         MemberDTO dto = memberService.getMemberById(1L);
 
         assertEquals("Alice", dto.getName());
         assertEquals(LocalDate.of(2021, 6, 15), dto.getMembershipDate());
+        assertEquals(2, dto.getVersion());
     }
 
     @Test
     void testGetMemberById_NotFound() {
-        when(memberRepository.findById(999L)).thenReturn(Optional.empty());
+        when(memberRepository.findSummaryById(999L)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> memberService.getMemberById(999L));
     }
@@ -134,6 +132,7 @@ class MemberServiceImplTest {
 
         memberService.deleteMember(3L);
 
+        verify(borrowRepository).deleteByMemberId(3L);
         verify(memberRepository).delete(member);
     }
 
@@ -0,0 +1,102 @@
+package com.example.library.service.impl;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.entity.Book;
+import com.example.library.exception.NotFoundException;
+import com.example.library.repository.BookRepository;
+import com.example.library.service.ReactiveCatalogueService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class ReactiveCatalogueServiceImplTest extends PostgresIntegrationTest {
+
+    private static final int BOOKS = 120;
+
+    @Autowired
+    private ReactiveCatalogueService reactiveCatalogueService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MockMvc mockMvc;
+
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+        books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setTitle("Reactive Title " + i);
+            book.setAuthor("Reactive Author");
+            book.setAmount(i % 3);
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void listBooksPagesByCursor() {
+        Long tenth = books.get(9).getId();
+
+        StepVerifier.create(reactiveCatalogueService.listBooks(tenth, 5).map(BookDTO::getId))
+                .expectNext(books.get(10).getId(), books.get(11).getId(), books.get(12).getId(),
+                        books.get(13).getId(), books.get(14).getId())
+                .verifyComplete();
+        assertThrows(IllegalArgumentException.class, () -> reactiveCatalogueService.listBooks(null, 0));
+    }
+
+    @Test
+    void streamBooksHonoursDemand() {
+        StepVerifier.create(reactiveCatalogueService.streamBooks(null), 0)
+                .expectSubscription()
+                .thenRequest(2)
+                .expectNextCount(2)
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(BOOKS - 2)
+                .verifyComplete();
+    }
+
+    @Test
+    void unknownBookIsNotFound() {
+        StepVerifier.create(reactiveCatalogueService.getBookById(Long.MAX_VALUE))
+                .expectError(NotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void ndjsonEndpointStreamsTheCatalogue() throws Exception {
+        MvcResult pending = mockMvc.perform(get("/api/v2/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(BOOKS, body.lines().count());
+        assertTrue(body.lines().findFirst().orElseThrow().contains("\"title\":\"Reactive Title 0\""));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.library.stats;
+
+import com.example.library.PostgresIntegrationTest;
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BorrowedBookStatDTO;
+import com.example.library.entity.Book;
+import com.example.library.entity.Member;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BorrowStatsTrackerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BorrowStatsTracker borrowStatsTracker;
+    @Autowired
+    private BorrowService borrowService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private BorrowRepository borrowRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book;
+    private Member member;
+    private String title;
+
+    @BeforeEach
+    void setUp() {
+        // The tracker outlives each test's rows, so every test counts under a title of its own.
+        title = "Tracked Title " + System.nanoTime();
+        book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Stats Author");
+        book.setAmount(5);
+        bookRepository.save(book);
+
+        member = new Member();
+        member.setName("Stats Member");
+        member.setMembershipDate(LocalDate.now());
+        memberRepository.save(member);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        borrowRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void borrowAndReturnUpdateTheCounts() {
+        assertTrue(borrowStatsTracker.isSeeded());
+
+        borrowService.borrowBook(member.getId(), book.getId());
+        borrowService.borrowBook(member.getId(), book.getId());
+        assertEquals(2, activeCount(title));
+        assertTrue(borrowService.getDistinctBorrowedBooks().contains(title));
+
+        borrowService.returnBook(member.getId(), book.getId());
+        assertEquals(1, activeCount(title));
+    }
+
+    @Test
+    void renamingABookMovesItsCount() {
+        borrowService.borrowBook(member.getId(), book.getId());
+        BookDTO rename = new BookDTO();
+        rename.setTitle("Retitled " + title);
+        rename.setAuthor("Stats Author");
+        rename.setAmount(4);
+
+        bookService.updateBook(book.getId(), rename);
+
+        assertEquals(0, activeCount(title));
+        assertEquals(1, activeCount("Retitled " + title));
+    }
+
+    @Test
+    void reconciliationFixesDriftThatPersists() {
+        borrowService.borrowBook(member.getId(), book.getId());
+        // A loan written behind the service's back is invisible to the tracker.
+        jdbcTemplate.update("INSERT INTO borrow (member_id, book_id, borrow_date) VALUES (?, ?, CURRENT_DATE)",
+                member.getId(), book.getId());
+
+        borrowStatsTracker.reconcile();
+        assertEquals(1, activeCount(title));
+
+        borrowStatsTracker.reconcile();
+        assertEquals(2, activeCount(title));
+    }
+
+    private long activeCount(String title) {
+        return borrowService.getBorrowedBookStats().stream()
+                .filter(stat -> stat.getTitle().equals(title))
+                .mapToLong(BorrowedBookStatDTO::getCount)
+                .sum();
+    }
+}